@@ -23,7 +23,6 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.execution.*;
 import org.apache.maven.model.InputLocation;
 import org.apache.maven.model.building.ModelProblem;
@@ -38,19 +37,31 @@ import org.apache.maven.settings.building.DefaultSettingsBuildingRequest;
 import org.apache.maven.settings.building.SettingsBuilder;
 import org.apache.maven.settings.building.SettingsBuildingException;
 import org.apache.maven.settings.building.SettingsBuildingResult;
-import org.codehaus.plexus.DefaultPlexusContainer;
 import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.PlexusContainerException;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.commonjava.maven.ext.manip.io.ModelIO;
 import org.commonjava.maven.ext.manip.io.PomIO;
+import org.commonjava.maven.ext.manip.resolver.GalleyInfrastructure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
 
 public class Cli
 {
@@ -115,6 +126,24 @@ public class Cli
                                  .valueSeparator( '=' )
                                  .desc( "Java Properties" )
                                  .build() );
+        options.addOption( Option.builder()
+                                 .longOpt( "daemon" )
+                                 .hasArgs()
+                                 .numberOfArgs( 1 )
+                                 .desc( "Serve manipulation requests on the given local port (0 for any free port)" )
+                                 .build() );
+        options.addOption( Option.builder()
+                                 .longOpt( "batch" )
+                                 .hasArgs()
+                                 .numberOfArgs( 1 )
+                                 .desc( "File listing root POMs to manipulate, one per line ('-' for stdin)" )
+                                 .build() );
+        options.addOption( Option.builder()
+                                 .longOpt( "batch-threads" )
+                                 .hasArgs()
+                                 .numberOfArgs( 1 )
+                                 .desc( "Number of project trees to manipulate in parallel in batch mode" )
+                                 .build() );
 
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = null;
@@ -152,15 +181,38 @@ public class Cli
             settings = new File( cmd.getOptionValue( 's' ) );
         }
 
+        if ( cmd.hasOption( "daemon" ) )
+        {
+            if ( cmd.hasOption( 'd' ) )
+            {
+                enableDebug();
+            }
+            runDaemon( Integer.parseInt( cmd.getOptionValue( "daemon" ) ) );
+            return;
+        }
+        if ( cmd.hasOption( "batch" ) )
+        {
+            if ( cmd.hasOption( 'd' ) )
+            {
+                enableDebug();
+            }
+            final int threads = cmd.hasOption( "batch-threads" ) ?
+                            Integer.parseInt( cmd.getOptionValue( "batch-threads" ) ) :
+                            Runtime.getRuntime().availableProcessors();
+            if ( !runBatch( cmd.getOptionValue( "batch" ), threads ) )
+            {
+                System.exit( 1 );
+            }
+            return;
+        }
+
         createSession( target, settings );
 
         // Set debug logging after session creation else we get the log filled with Plexus
         // creation stuff.
         if ( cmd.hasOption( 'd' ) )
         {
-            final ch.qos.logback.classic.Logger root =
-                (ch.qos.logback.classic.Logger) LoggerFactory.getLogger( org.slf4j.Logger.ROOT_LOGGER_NAME );
-            root.setLevel( Level.DEBUG );
+            enableDebug();
         }
 
         if ( !session.isEnabled() )
@@ -200,26 +252,10 @@ public class Cli
     {
         try
         {
-            PlexusContainer container = new DefaultPlexusContainer( );
-
-            final MavenExecutionRequest req =
-                new DefaultMavenExecutionRequest().setUserProperties( System.getProperties() )
-                                                  .setUserProperties( userProps )
-                                                  .setRemoteRepositories( Collections.<ArtifactRepository>emptyList() );
-            if ( settings != null )
-            {
-                req.setUserSettingsFile( settings );
-                req.setGlobalSettingsFile( settings );
-
-                MavenExecutionRequestPopulator executionRequestPopulator =
-                    container.lookup( MavenExecutionRequestPopulator.class );
-                executionRequestPopulator.populateFromSettings( req, parseSettings( settings ) );
-            }
+            final ManipulationWorker worker = new ManipulationWorker();
+            PlexusContainer container = worker.getContainer();
 
-            final MavenSession mavenSession =
-                new MavenSession( container, null, req, new DefaultMavenExecutionResult() );
-
-            mavenSession.getRequest().setPom( target );
+            final MavenSession mavenSession = worker.createMavenSession( target, settings, userProps );
 
             pomIO = container.lookup( PomIO.class );
             session = container.lookup( ManipulationSession.class );
@@ -254,10 +290,299 @@ public class Cli
         }
     }
 
-    private Settings parseSettings( File settings )
-        throws PlexusContainerException, ComponentLookupException, SettingsBuildingException
+    /**
+     * Serve manipulation requests from a single warm container until a <code>shutdown</code> request is received.
+     * Each connection to the (loopback only) port carries one request line, holding whitespace separated
+     * <code>-f</code>, <code>-s</code> and <code>-D</code> options as on the command line, and receives one line
+     * back: the status, the POM and the init and manipulation timings, followed by any error message.
+     * <p>
+     * Unless configured otherwise requests share the galley transfer executor, so that the galley infrastructure and
+     * the remote models resolved are kept from one request to the next while the repositories and settings stay the
+     * same.
+     * </p>
+     */
+    private void runDaemon( final int port )
+    {
+        final ManipulationWorker worker;
+        final ServerSocket server;
+        try
+        {
+            worker = new ManipulationWorker();
+            server = new ServerSocket( port, 50, InetAddress.getByName( "127.0.0.1" ) );
+        }
+        catch ( PlexusContainerException e )
+        {
+            logger.debug( "Caught problem instantiating ", e );
+            System.err.println( "Unable to start Cli subsystem" );
+            System.exit( 1 );
+            return;
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Caught problem opening daemon socket ", e );
+            System.err.println( "Unable to listen on port " + port + ": " + e.getMessage() );
+            System.exit( 1 );
+            return;
+        }
+
+        logger.info( "Manipulation daemon listening on port {}", server.getLocalPort() );
+
+        final Options requestOptions = new Options();
+        requestOptions.addOption( Option.builder( "f" ).longOpt( "file" ).hasArg().build() );
+        requestOptions.addOption( Option.builder( "s" ).longOpt( "settings" ).hasArg().build() );
+        requestOptions.addOption( Option.builder( "D" ).hasArgs().numberOfArgs( 2 ).valueSeparator( '=' ).build() );
+
+        boolean running = true;
+        try
+        {
+            while ( running )
+            {
+                final Socket socket = server.accept();
+                try
+                {
+                    final BufferedReader in =
+                        new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) );
+                    final Writer out = new OutputStreamWriter( socket.getOutputStream(), "UTF-8" );
+
+                    final String line = in.readLine();
+                    if ( line == null )
+                    {
+                        continue;
+                    }
+                    else if ( line.trim().equals( "shutdown" ) )
+                    {
+                        out.write( "BYE\n" );
+                        running = false;
+                    }
+                    else
+                    {
+                        out.write( handleDaemonRequest( worker, requestOptions, line ) + "\n" );
+                    }
+                    out.flush();
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( "Failed to process daemon request: {}", e.getMessage() );
+                }
+                finally
+                {
+                    closeQuietly( socket );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            logger.error( "Manipulation daemon failed.", e );
+            System.exit( 1 );
+        }
+        finally
+        {
+            closeQuietly( server );
+        }
+    }
+
+    private String handleDaemonRequest( final ManipulationWorker worker, final Options requestOptions,
+                                        final String line )
+    {
+        final CommandLine request;
+        try
+        {
+            request = new DefaultParser().parse( requestOptions, line.trim().split( "\\s+" ) );
+        }
+        catch ( ParseException e )
+        {
+            return ManipulationWorker.Status.FAILED + " " + e.getMessage();
+        }
+
+        final File pom = request.hasOption( 'f' ) ? new File( request.getOptionValue( 'f' ) ) : target;
+        final File requestSettings = request.hasOption( 's' ) ? new File( request.getOptionValue( 's' ) ) : settings;
+
+        final Properties requestProps = new Properties();
+        requestProps.setProperty( GalleyInfrastructure.TRANSFER_SHARED_PROP, "true" );
+        if ( userProps != null )
+        {
+            requestProps.putAll( userProps );
+        }
+        if ( request.hasOption( 'D' ) )
+        {
+            requestProps.putAll( request.getOptionProperties( "D" ) );
+        }
+
+        final ManipulationWorker.Result result = worker.manipulate( pom, requestSettings, requestProps );
+        logger.info( "Daemon request completed: {}", result );
+        return result.toString().replace( '\n', ' ' );
+    }
+
+    /**
+     * Manipulate each of the independent project trees listed in the source, up to <code>threads</code> at a time,
+     * and print a summary of each. Every worker thread owns a container (and therefore an isolated
+     * {@link ManipulationSession}) which it reuses for its share of the trees; unless configured otherwise the
+     * workers share a single galley transfer executor, HTTP connection pool and cache of remote models. The galley
+     * resolver itself stays per worker, as its file cache lives beneath the build directory of each tree.
+     *
+     * @return true if no tree failed.
+     */
+    private boolean runBatch( final String source, final int threads )
+    {
+        final List<File> poms;
+        try
+        {
+            poms = readBatch( source );
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Caught problem reading batch ", e );
+            System.err.println( "Unable to read batch list " + source + ": " + e.getMessage() );
+            return false;
+        }
+
+        final Properties batchProps = new Properties();
+        batchProps.setProperty( GalleyInfrastructure.TRANSFER_SHARED_PROP, "true" );
+        batchProps.setProperty( ModelIO.SHARED_CACHE_PROP, "true" );
+        if ( userProps != null )
+        {
+            batchProps.putAll( userProps );
+        }
+
+        final long start = System.currentTimeMillis();
+        final int workers = Math.max( 1, Math.min( threads, poms.size() ) );
+        final ManipulationWorker.Result[] results = manipulateBatch( poms, batchProps, workers );
+        if ( results == null )
+        {
+            System.err.println( "Interrupted waiting for batch to complete" );
+            return false;
+        }
+
+        int succeeded = 0;
+        int skipped = 0;
+        int failed = 0;
+
+        System.out.println( "Batch summary:" );
+        for ( final ManipulationWorker.Result result : results )
+        {
+            System.out.println( "  " + result );
+            switch ( result.status )
+            {
+                case SUCCESS:
+                    succeeded++;
+                    break;
+                case SKIPPED:
+                    skipped++;
+                    break;
+                default:
+                    failed++;
+            }
+        }
+        System.out.println( String.format( "%d succeeded, %d skipped, %d failed in %dms with %d threads", succeeded,
+                                           skipped, failed, System.currentTimeMillis() - start, workers ) );
+
+        return failed == 0;
+    }
+
+    /**
+     * Manipulate the given project trees on <code>workers</code> threads, each creating its container on first use.
+     *
+     * @return the result for each POM, in the order given, or null if interrupted while waiting for the workers.
+     */
+    ManipulationWorker.Result[] manipulateBatch( final List<File> poms, final Properties batchProps,
+                                                 final int workers )
+    {
+        final ManipulationWorker.Result[] results = new ManipulationWorker.Result[poms.size()];
+        final AtomicInteger next = new AtomicInteger();
+
+        final List<Thread> running = new ArrayList<Thread>( workers );
+        for ( int i = 0; i < workers; i++ )
+        {
+            final Thread worker = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ManipulationWorker worker = null;
+                    int index;
+                    while ( ( index = next.getAndIncrement() ) < poms.size() )
+                    {
+                        final File pom = poms.get( index );
+                        if ( worker == null )
+                        {
+                            try
+                            {
+                                worker = new ManipulationWorker();
+                            }
+                            catch ( PlexusContainerException e )
+                            {
+                                logger.error( "Unable to start Cli subsystem", e );
+                                results[index] =
+                                    new ManipulationWorker.Result( pom, ManipulationWorker.Status.FAILED,
+                                                                   e.getMessage(), 0, 0 );
+                                continue;
+                            }
+                        }
+                        final Properties treeProps = new Properties();
+                        treeProps.putAll( batchProps );
+                        results[index] = worker.manipulate( pom, settings, treeProps );
+                    }
+                }
+            }, "batch-worker-" + ( i + 1 ) );
+            worker.start();
+            running.add( worker );
+        }
+
+        for ( final Thread worker : running )
+        {
+            try
+            {
+                worker.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return results;
+    }
+
+    private List<File> readBatch( final String source )
+        throws IOException
+    {
+        final List<File> poms = new ArrayList<File>();
+        final BufferedReader in =
+            new BufferedReader( "-".equals( source ) ? new InputStreamReader( System.in, "UTF-8" ) :
+                                                new InputStreamReader( new FileInputStream( source ), "UTF-8" ) );
+        try
+        {
+            String line;
+            while ( ( line = in.readLine() ) != null )
+            {
+                line = line.trim();
+                if ( line.length() > 0 && !line.startsWith( "#" ) )
+                {
+                    File pom = new File( line );
+                    poms.add( pom.isDirectory() ? new File( pom, "pom.xml" ) : pom );
+                }
+            }
+        }
+        finally
+        {
+            if ( !"-".equals( source ) )
+            {
+                closeQuietly( in );
+            }
+        }
+        return poms;
+    }
+
+    private void enableDebug()
+    {
+        final ch.qos.logback.classic.Logger root =
+            (ch.qos.logback.classic.Logger) LoggerFactory.getLogger( org.slf4j.Logger.ROOT_LOGGER_NAME );
+        root.setLevel( Level.DEBUG );
+    }
+
+    static Settings parseSettings( PlexusContainer container, File settings )
+        throws ComponentLookupException, SettingsBuildingException
     {
-        PlexusContainer container = new DefaultPlexusContainer();
         DefaultSettingsBuildingRequest settingsRequest = new DefaultSettingsBuildingRequest();
         settingsRequest.setUserSettingsFile( settings );
         settingsRequest.setGlobalSettingsFile( DEFAULT_GLOBAL_SETTINGS_FILE );
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequestPopulationException;
+import org.apache.maven.execution.MavenExecutionRequestPopulator;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.building.SettingsBuildingException;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.PlexusContainerException;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs manipulations against one project tree at a time using a single, long-lived Plexus container, so that the
+ * container, the parsed settings, the galley infrastructure and the remote models resolved stay warm between runs. The manipulation components are
+ * container singletons, hence a worker must not be used by more than one thread at a time; run several workers to
+ * manipulate trees in parallel.
+ */
+class ManipulationWorker
+{
+    enum Status
+    {
+        SUCCESS, SKIPPED, FAILED
+    }
+
+    /**
+     * Outcome and timings of a single manipulation run.
+     */
+    static final class Result
+    {
+        final File pom;
+
+        final Status status;
+
+        final String message;
+
+        final long initMillis;
+
+        final long manipulateMillis;
+
+        Result( final File pom, final Status status, final String message, final long initMillis,
+                final long manipulateMillis )
+        {
+            this.pom = pom;
+            this.status = status;
+            this.message = message;
+            this.initMillis = initMillis;
+            this.manipulateMillis = manipulateMillis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "%s %s init=%dms manipulate=%dms%s", status, pom, initMillis, manipulateMillis,
+                                  message == null ? "" : " " + message );
+        }
+    }
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final PlexusContainer container;
+
+    private final Map<File, CachedSettings> settingsCache = new HashMap<File, CachedSettings>();
+
+    ManipulationWorker()
+        throws PlexusContainerException
+    {
+        this( new DefaultPlexusContainer() );
+    }
+
+    ManipulationWorker( final PlexusContainer container )
+    {
+        this.container = container;
+    }
+
+    PlexusContainer getContainer()
+    {
+        return container;
+    }
+
+    /**
+     * Manipulate the project tree rooted at the given POM. Failures are reported in the result rather than thrown.
+     *
+     * @param target the root POM of the tree.
+     * @param settings optional settings.xml file.
+     * @param userProps the user properties to manipulate with.
+     * @return the outcome of the run.
+     */
+    Result manipulate( final File target, final File settings, final Properties userProps )
+    {
+        final long start = System.currentTimeMillis();
+        try
+        {
+            final ManipulationSession session = container.lookup( ManipulationSession.class );
+            final ManipulationManager manipulationManager = container.lookup( ManipulationManager.class );
+
+            session.setMavenSession( createMavenSession( target, settings, userProps ) );
+
+            if ( !session.isEnabled() )
+            {
+                return new Result( target, Status.SKIPPED, "Manipulation engine disabled via command-line option", 0,
+                                   0 );
+            }
+            if ( !target.exists() )
+            {
+                return new Result( target, Status.SKIPPED, "No project found", 0, 0 );
+            }
+            else if ( new File( target.getParentFile(), ManipulationManager.MARKER_FILE ).exists() )
+            {
+                return new Result( target, Status.SKIPPED, "Previous execution found", 0, 0 );
+            }
+
+            manipulationManager.init( session );
+            final long initialised = System.currentTimeMillis();
+
+            manipulationManager.scanAndApply( session );
+
+            return new Result( target, Status.SUCCESS, null, initialised - start,
+                               System.currentTimeMillis() - initialised );
+        }
+        catch ( final Exception e )
+        {
+            logger.error( "POM Manipulation failed for " + target, e );
+            return new Result( target, Status.FAILED, e.getMessage(), 0, System.currentTimeMillis() - start );
+        }
+    }
+
+    MavenSession createMavenSession( final File target, final File settings, final Properties userProps )
+        throws ComponentLookupException, PlexusContainerException, SettingsBuildingException,
+        MavenExecutionRequestPopulationException
+    {
+        final MavenExecutionRequest req =
+            new DefaultMavenExecutionRequest().setUserProperties( System.getProperties() )
+                                              .setUserProperties( userProps )
+                                              .setRemoteRepositories( Collections.<ArtifactRepository>emptyList() );
+        if ( settings != null )
+        {
+            req.setUserSettingsFile( settings );
+            req.setGlobalSettingsFile( settings );
+
+            MavenExecutionRequestPopulator executionRequestPopulator =
+                container.lookup( MavenExecutionRequestPopulator.class );
+            executionRequestPopulator.populateFromSettings( req, getSettings( settings ) );
+        }
+
+        final MavenSession mavenSession = new MavenSession( container, null, req, new DefaultMavenExecutionResult() );
+
+        mavenSession.getRequest().setPom( target );
+
+        return mavenSession;
+    }
+
+    /**
+     * Parsing settings requires a full settings build and profile activation, so the result is kept until the file
+     * changes. Each session receives its own copy.
+     */
+    private Settings getSettings( final File settings )
+        throws ComponentLookupException, SettingsBuildingException
+    {
+        final File key = settings.getAbsoluteFile();
+        CachedSettings cached = settingsCache.get( key );
+        if ( cached == null || cached.lastModified != key.lastModified() )
+        {
+            cached = new CachedSettings( key.lastModified(), Cli.parseSettings( container, settings ) );
+            settingsCache.put( key, cached );
+        }
+        return cached.settings.clone();
+    }
+
+    private static final class CachedSettings
+    {
+        private final long lastModified;
+
+        private final Settings settings;
+
+        private CachedSettings( final long lastModified, final Settings settings )
+        {
+            this.lastModified = lastModified;
+            this.settings = settings;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.ext.manip.io.ModelIO;
+import org.commonjava.maven.ext.manip.resolver.GalleyInfrastructure;
+import org.commonjava.maven.ext.manip.rest.FileVersionTranslator;
+import org.commonjava.maven.ext.manip.state.DependencyRESTState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ManipulationWorkerTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void runsDoNotShareState()
+        throws Exception
+    {
+        final Map<ProjectVersionRef, String> translations = new HashMap<ProjectVersionRef, String>();
+        translations.put( new ProjectVersionRef( "junit", "junit", "4.1" ), "4.1.redhat-1" );
+        translations.put( new ProjectVersionRef( "commons-lang", "commons-lang", "2.5" ), "2.5.redhat-1" );
+        final File translationFile = temp.newFile( "translations.bin" );
+        FileVersionTranslator.write( translationFile, translations );
+
+        final Properties userProps = new Properties();
+        userProps.setProperty( DependencyRESTState.REST_TRANSLATOR, "file" );
+        userProps.setProperty( DependencyRESTState.REST_TRANSLATION_FILE, translationFile.getPath() );
+
+        final File first = pom( "first", "<properties><version.junit>4.1</version.junit></properties>",
+                                "junit", "junit", "${version.junit}" );
+        final File second = pom( "second", "", "commons-lang", "commons-lang", "2.5" );
+
+        final ManipulationWorker worker = new ManipulationWorker();
+        assertThat( worker.manipulate( first, null, userProps ).status, is( ManipulationWorker.Status.SUCCESS ) );
+        assertThat( worker.manipulate( second, null, userProps ).status, is( ManipulationWorker.Status.SUCCESS ) );
+
+        assertThat( read( first ).getProperties().getProperty( "version.junit" ), is( "4.1.redhat-1" ) );
+
+        final Model model = read( second );
+        assertThat( model.getDependencies().get( 0 ).getVersion(), is( "2.5.redhat-1" ) );
+        // The property update of the first run must not be injected into the second project.
+        assertThat( model.getProperties().getProperty( "version.junit" ), nullValue() );
+    }
+
+    @Test
+    public void batchReportsEveryTreeInOrder()
+        throws Exception
+    {
+        final Map<ProjectVersionRef, String> translations = new HashMap<ProjectVersionRef, String>();
+        translations.put( new ProjectVersionRef( "junit", "junit", "4.1" ), "4.1.redhat-1" );
+        final File translationFile = temp.newFile( "translations.bin" );
+        FileVersionTranslator.write( translationFile, translations );
+
+        final Properties batchProps = new Properties();
+        batchProps.setProperty( DependencyRESTState.REST_TRANSLATOR, "file" );
+        batchProps.setProperty( DependencyRESTState.REST_TRANSLATION_FILE, translationFile.getPath() );
+        batchProps.setProperty( GalleyInfrastructure.TRANSFER_SHARED_PROP, "true" );
+        batchProps.setProperty( ModelIO.SHARED_CACHE_PROP, "true" );
+
+        final List<File> poms = new ArrayList<File>();
+        for ( int i = 0; i < 3; i++ )
+        {
+            poms.add( pom( "tree" + i, "", "junit", "junit", "4.1" ) );
+        }
+        final File broken = new File( temp.newFolder( "broken" ), "pom.xml" );
+        FileUtils.writeStringToFile( broken, "<project><modelVersion>4.0.0</modelVersion><groupId>org.foo</groupId>"
+            + "<artifactId>broken</artifactId><version>1.0</version><dependencies>" );
+        poms.add( 1, broken );
+
+        final ManipulationWorker.Result[] results = new Cli().manipulateBatch( poms, batchProps, 2 );
+
+        assertThat( results.length, is( poms.size() ) );
+        for ( int i = 0; i < poms.size(); i++ )
+        {
+            assertThat( results[i].pom, is( poms.get( i ) ) );
+            if ( i == 1 )
+            {
+                assertThat( results[i].status, is( ManipulationWorker.Status.FAILED ) );
+            }
+            else
+            {
+                assertThat( results[i].toString(), results[i].status, is( ManipulationWorker.Status.SUCCESS ) );
+                assertThat( read( poms.get( i ) ).getDependencies().get( 0 ).getVersion(), is( "4.1.redhat-1" ) );
+            }
+        }
+    }
+
+    @Test
+    public void fileTranslatorWithoutFileIsDisabled()
+        throws Exception
+    {
+        final Properties userProps = new Properties();
+        userProps.setProperty( DependencyRESTState.REST_TRANSLATOR, "file" );
+
+        final File project = pom( "project", "", "junit", "junit", "4.1" );
+
+        final ManipulationWorker.Result result = new ManipulationWorker().manipulate( project, null, userProps );
+        assertThat( result.toString(), result.status, is( ManipulationWorker.Status.SUCCESS ) );
+        assertThat( read( project ).getDependencies().get( 0 ).getVersion(), is( "4.1" ) );
+    }
+
+    private File pom( final String artifactId, final String properties, final String groupId,
+                      final String dependency, final String version )
+        throws Exception
+    {
+        final File pom = new File( temp.newFolder( artifactId ), "pom.xml" );
+        final FileWriter writer = new FileWriter( pom );
+        try
+        {
+            writer.write( "<project><modelVersion>4.0.0</modelVersion><groupId>org.foo</groupId><artifactId>"
+                + artifactId + "</artifactId><version>1.0</version>" + properties
+                + "<dependencies><dependency><groupId>" + groupId + "</groupId><artifactId>" + dependency
+                + "</artifactId><version>" + version + "</version></dependency></dependencies></project>" );
+        }
+        finally
+        {
+            writer.close();
+        }
+        return pom;
+    }
+
+    private static Model read( final File pom )
+        throws Exception
+    {
+        final FileReader reader = new FileReader( pom );
+        try
+        {
+            return new MavenXpp3Reader().read( reader );
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads named <code>prefix-N</code> so that pool workers are identifiable in thread dumps and never
+ * keep the JVM (or the enclosing Maven build) alive.
+ */
+public class NamedThreadFactory
+    implements ThreadFactory
+{
+    private final String prefix;
+
+    private final AtomicInteger counter = new AtomicInteger( 1 );
+
+    public NamedThreadFactory( final String prefix )
+    {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread( final Runnable r )
+    {
+        final Thread t = new Thread( r, prefix + "-" + counter.getAndIncrement() );
+        t.setDaemon( true );
+        return t;
+    }
+}
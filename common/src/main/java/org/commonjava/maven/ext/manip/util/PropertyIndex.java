@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.ext.manip.model.Project;
+
+/**
+ * Index of the properties defined by a set of projects (or a single set of properties), built once so that looking up
+ * a property, or following a chain of <code>${...}</code> references, does not rescan every project. Values may combine
+ * several references, as in <code>${version.major}.${version.minor}</code>; see {@link VersionExpression}. Resolved
+ * properties are memoized and a cyclic chain is reported as an error.
+ * <p>
+ * Where several projects define the same property the definition in the last of them, in the order given, is used.
+ * The index reflects the properties as they were when it was built.
+ * </p>
+ */
+public final class PropertyIndex
+{
+    private final Map<String, String> values = new HashMap<String, String>();
+
+    private final Map<String, String> resolved = new HashMap<String, String>();
+
+    /**
+     * @param projects the projects whose properties to index, in reactor order.
+     */
+    public PropertyIndex( final Collection<Project> projects )
+    {
+        for ( final Project project : projects )
+        {
+            final Properties properties = project.getModel().getProperties();
+            for ( final String name : properties.stringPropertyNames() )
+            {
+                values.put( name, properties.getProperty( name ) );
+            }
+        }
+    }
+
+    /**
+     * @param properties the properties to index.
+     */
+    public PropertyIndex( final Properties properties )
+    {
+        for ( final String name : properties.stringPropertyNames() )
+        {
+            values.put( name, properties.getProperty( name ) );
+        }
+    }
+
+    /**
+     * @param values the property values to index, keyed by name.
+     */
+    public PropertyIndex( final Map<String, String> values )
+    {
+        this.values.putAll( values );
+    }
+
+    /**
+     * @return true if the value is a single property reference, i.e. <code>${name}</code>.
+     */
+    public static boolean isReference( final String value )
+    {
+        return value != null && VersionExpression.parse( value ).isReference();
+    }
+
+    /**
+     * Resolve the property references in a value, following any chain of references.
+     *
+     * @param value the value to resolve.
+     * @return the resolved value. A reference, at any point in a chain, to an undefined property is left in place.
+     * @throws ManipulationException if a chain of references is cyclic.
+     */
+    public String resolve( final String value )
+        throws ManipulationException
+    {
+        return value == null ? null : resolve( VersionExpression.parse( value ) );
+    }
+
+    /**
+     * @see #resolve(String)
+     */
+    public String resolve( final VersionExpression expression )
+        throws ManipulationException
+    {
+        return evaluate( expression, new LinkedHashSet<String>() );
+    }
+
+    private String evaluate( final VersionExpression expression, final Set<String> chain )
+        throws ManipulationException
+    {
+        if ( expression.isLiteral() )
+        {
+            return expression.toString();
+        }
+        if ( expression.isReference() )
+        {
+            return resolveProperty( expression.getProperty(), chain );
+        }
+
+        final StringBuilder result = new StringBuilder();
+        for ( int i = 0; i < expression.getTokenCount(); i++ )
+        {
+            if ( i % 2 == 0 )
+            {
+                result.append( expression.getToken( i ) );
+            }
+            else
+            {
+                result.append( resolveProperty( expression.getToken( i ), chain ) );
+            }
+        }
+        return result.toString();
+    }
+
+    private String resolveProperty( final String name, final Set<String> chain )
+        throws ManipulationException
+    {
+        String result = resolved.get( name );
+        if ( result != null )
+        {
+            return result;
+        }
+
+        final String value = values.get( name );
+        if ( value == null )
+        {
+            return "${" + name + '}';
+        }
+
+        if ( !chain.add( name ) )
+        {
+            final StringBuilder cycle = new StringBuilder();
+            for ( final String link : chain )
+            {
+                cycle.append( link ).append( " -> " );
+            }
+            throw new ManipulationException( "Cyclic property reference: {}", cycle.append( name ).toString() );
+        }
+
+        try
+        {
+            result = evaluate( VersionExpression.parse( value ), chain );
+        }
+        finally
+        {
+            chain.remove( name );
+        }
+        resolved.put( name, result );
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.util;
+
+import java.util.Properties;
+
+import org.commonjava.maven.ext.manip.ManipulationException;
+
+/**
+ * Typed access to the user properties configuring the manipulator.
+ */
+public final class UserProperties
+{
+    private UserProperties()
+    {
+    }
+
+    /**
+     * Retrieve an integer valued user property.
+     *
+     * @param userProperties the properties to read from.
+     * @param name the property name.
+     * @param defaultValue the value to use if the property is not set, or is empty.
+     * @return the property value.
+     * @throws ManipulationException if the property is not a number.
+     */
+    public static int getInteger( final Properties userProperties, final String name, final int defaultValue )
+        throws ManipulationException
+    {
+        final String value = userProperties.getProperty( name );
+        if ( value == null || value.trim().length() == 0 )
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Integer.parseInt( value.trim() );
+        }
+        catch ( final NumberFormatException e )
+        {
+            throw new ManipulationException( "Invalid value for {}: {}", e, name, value );
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A version (or other value) split into its literal text and <code>${...}</code> property references, e.g.
+ * <code>${version.major}.${version.minor}-redhat</code>. The same version strings recur across the dependencies of
+ * every module, so expressions are parsed once and shared; use {@link #parse(String)} to obtain one.
+ * <p>
+ * Tokens alternate between literal text and property names, starting with a (possibly empty) literal, so the property
+ * names are the odd tokens. An unterminated <code>${</code> is literal text.
+ * </p>
+ */
+public final class VersionExpression
+{
+    /**
+     * Upper bound on the number of cached expressions, so that a long-lived process does not accumulate every version
+     * it has seen. The cache is simply emptied when it is reached.
+     */
+    private static final int MAX_CACHED = 10000;
+
+    private static final ConcurrentMap<String, VersionExpression> CACHE =
+        new ConcurrentHashMap<String, VersionExpression>();
+
+    private final String value;
+
+    private final String[] tokens;
+
+    private VersionExpression( final String value, final String[] tokens )
+    {
+        this.value = value;
+        this.tokens = tokens;
+    }
+
+    /**
+     * @param value the value to parse; must not be null.
+     * @return the parsed form of the value.
+     */
+    public static VersionExpression parse( final String value )
+    {
+        VersionExpression result = CACHE.get( value );
+        if ( result == null )
+        {
+            result = new VersionExpression( value, tokenize( value ) );
+            if ( CACHE.size() >= MAX_CACHED )
+            {
+                CACHE.clear();
+            }
+            CACHE.put( value, result );
+        }
+        return result;
+    }
+
+    private static String[] tokenize( final String value )
+    {
+        final List<String> tokens = new ArrayList<String>( 3 );
+        int literalStart = 0;
+        int start = value.indexOf( "${" );
+        while ( start >= 0 )
+        {
+            final int end = value.indexOf( '}', start + 2 );
+            if ( end < 0 )
+            {
+                break;
+            }
+            tokens.add( value.substring( literalStart, start ) );
+            tokens.add( value.substring( start + 2, end ) );
+            literalStart = end + 1;
+            start = value.indexOf( "${", literalStart );
+        }
+        tokens.add( value.substring( literalStart ) );
+        return tokens.toArray( new String[tokens.size()] );
+    }
+
+    /**
+     * @return true if the value contains no property references.
+     */
+    public boolean isLiteral()
+    {
+        return tokens.length == 1;
+    }
+
+    /**
+     * @return true if the value is a single property reference, i.e. <code>${name}</code>.
+     */
+    public boolean isReference()
+    {
+        return tokens.length == 3 && tokens[0].length() == 0 && tokens[2].length() == 0;
+    }
+
+    /**
+     * @return true if the value combines a property reference with literal text or other references.
+     */
+    public boolean isComposite()
+    {
+        return !isLiteral() && !isReference();
+    }
+
+    /**
+     * @return the name of the first property referenced, or null if the value is a literal.
+     */
+    public String getProperty()
+    {
+        return isLiteral() ? null : tokens[1];
+    }
+
+    /**
+     * @return the names of the properties referenced, in order of appearance.
+     */
+    public List<String> getProperties()
+    {
+        if ( isLiteral() )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<String> result = new ArrayList<String>( tokens.length / 2 );
+        for ( int i = 1; i < tokens.length; i += 2 )
+        {
+            result.add( tokens[i] );
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of tokens; literal text and property names alternate, starting with literal text.
+     */
+    int getTokenCount()
+    {
+        return tokens.length;
+    }
+
+    /**
+     * @return the token at the given position; odd positions hold property names.
+     */
+    String getToken( final int index )
+    {
+        return tokens[index];
+    }
+
+    @Override
+    public String toString()
+    {
+        return value;
+    }
+}
@@ -20,6 +20,7 @@ import org.apache.maven.project.ProjectBuilder;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.commonjava.maven.ext.manip.impl.Manipulator;
+import org.commonjava.maven.ext.manip.io.ModelIO;
 import org.commonjava.maven.ext.manip.io.PomIO;
 import org.commonjava.maven.ext.manip.model.Project;
 import org.commonjava.maven.ext.manip.resolver.ExtensionInfrastructure;
@@ -73,6 +74,9 @@ public class ManipulationManager
     @Requirement
     private PomIO pomIO;
 
+    @Requirement
+    private ModelIO modelIO;
+
     /**
      * Determined from {@link Manipulator#getExecutionIndex()} comparisons during {@link #init(ManipulationSession)}.
      */
@@ -91,8 +95,9 @@ public class ManipulationManager
         for ( final ExtensionInfrastructure infra : infrastructure.values() )
         {
             infra.init( session.getTargetDir(), session.getRemoteRepositories(), session.getLocalRepository(),
-                        session.getSettings(), session.getActiveProfiles() );
+                        session.getSettings(), session.getActiveProfiles(), session.getUserProperties() );
         }
+        modelIO.beginSession( session.getUserProperties() );
 
         final HashMap<Manipulator, String> revMap = new HashMap<Manipulator, String>();
         for ( final Map.Entry<String, Manipulator> entry : manipulators.entrySet() )
@@ -120,44 +125,97 @@ public class ManipulationManager
     public void scanAndApply( final ManipulationSession session )
                     throws ManipulationException
     {
-        final List<Project> projects = pomIO.parseProject( session.getPom() );
+        boolean completed = false;
+        try
+        {
+            final List<Project> projects =
+                pomIO.parseProject( session.getPom(), session.getParseThreads(), getProjectListener() );
 
-        scan( projects, session );
+            scan( projects, session );
 
-        for ( final Project project : projects )
-        {
-            logger.debug( "Got " + project + " (POM: " + project.getPom() + ")" );
-            logger.debug( "### Project is execution root " + project.isExecutionRoot() + " and is inheritance root "
-                                          + project.isInheritanceRoot() );
-        }
+            for ( final Project project : projects )
+            {
+                logger.debug( "Got " + project + " (POM: " + project.getPom() + ")" );
+                logger.debug( "### Project is execution root " + project.isExecutionRoot()
+                                  + " and is inheritance root " + project.isInheritanceRoot() );
+            }
 
-        Set<Project> changed = applyManipulations( projects, session );
+            Set<Project> changed = applyManipulations( projects, session );
 
-        // Create a marker file if we made some changes to prevent duplicate runs.
-        if ( !changed.isEmpty() )
+            // Create a marker file if we made some changes to prevent duplicate runs.
+            if ( !changed.isEmpty() )
+            {
+                logger.info( "Maven-Manipulation-Extension: Rewrite changed: " + projects );
+                pomIO.rewritePOMs( changed, session.getWriteThreads(), session.isWriteSkipUnchanged() );
+
+                try
+                {
+                    new File( session.getTargetDir().getParentFile(),
+                              ManipulationManager.MARKER_PATH ).mkdirs();
+                    new File( session.getTargetDir().getParentFile(),
+                              ManipulationManager.MARKER_FILE ).createNewFile();
+                }
+                catch ( IOException e )
+                {
+                    throw new ManipulationException( "Marker file creation failed", e );
+                }
+            }
+            completed = true;
+        }
+        finally
         {
-            logger.info( "Maven-Manipulation-Extension: Rewrite changed: " + projects );
-            pomIO.rewritePOMs( changed );
+            // Ensure shutdown of GalleyInfrastructure Executor Service
+            for ( ExtensionInfrastructure e : infrastructure.values() )
+            {
+                e.finish();
+            }
 
-            try
+            // Keep nothing a failed run cached, as the failure may stem from what it resolved.
+            if ( completed )
             {
-                new File( session.getTargetDir().getParentFile(),
-                          ManipulationManager.MARKER_PATH ).mkdirs();
-                new File( session.getTargetDir().getParentFile(),
-                          ManipulationManager.MARKER_FILE ).createNewFile();
+                modelIO.endSession();
             }
-            catch ( IOException e )
+            else
             {
-                throw new ManipulationException( "Marker file creation failed", e );
+                modelIO.clearCache();
             }
         }
+        logger.info( "Maven-Manipulation-Extension: Finished." );
+    }
 
-        // Ensure shutdown of GalleyInfrastructure Executor Service
-        for (ExtensionInfrastructure e : infrastructure.values())
+    /**
+     * Manipulators which can start work on individual projects while the rest of the build is still being read
+     * implement {@link PomIO.ProjectListener}; this returns a listener forwarding to each of them in execution order,
+     * or null if there are none.
+     */
+    private PomIO.ProjectListener getProjectListener()
+    {
+        final List<PomIO.ProjectListener> listeners = new ArrayList<PomIO.ProjectListener>();
+        for ( final Manipulator manipulator : orderedManipulators )
         {
-            e.finish();
+            if ( manipulator instanceof PomIO.ProjectListener )
+            {
+                listeners.add( (PomIO.ProjectListener) manipulator );
+            }
         }
-        logger.info( "Maven-Manipulation-Extension: Finished." );
+
+        if ( listeners.isEmpty() )
+        {
+            return null;
+        }
+
+        return new PomIO.ProjectListener()
+        {
+            @Override
+            public void projectRead( final Project project )
+                throws ManipulationException
+            {
+                for ( final PomIO.ProjectListener listener : listeners )
+                {
+                    listener.projectRead( project );
+                }
+            }
+        };
     }
 
     /**
@@ -24,6 +24,7 @@ import org.commonjava.maven.ext.manip.impl.Manipulator;
 import org.commonjava.maven.ext.manip.model.Project;
 import org.commonjava.maven.ext.manip.state.State;
 import org.commonjava.maven.ext.manip.state.VersioningState;
+import org.commonjava.maven.ext.manip.util.UserProperties;
 
 import java.io.File;
 import java.util.*;
@@ -41,6 +42,26 @@ public class ManipulationSession
 
     public static final String MANIPULATIONS_DISABLED_PROP = "manipulation.disable";
 
+    /**
+     * Number of threads used to peek at and parse the project POMs. Defaults to 1 (serial).
+     */
+    public static final String PARSE_THREADS_PROP = "manipulation.parse.threads";
+
+    /**
+     * Number of threads used to rewrite the changed project POMs. Defaults to 1 (serial).
+     */
+    public static final String WRITE_THREADS_PROP = "manipulation.write.threads";
+
+    /**
+     * Whether to skip rewriting POMs whose serialized content is unchanged. Defaults to false.
+     */
+    public static final String WRITE_SKIP_UNCHANGED_PROP = "manipulation.write.skipUnchanged";
+
+    /**
+     * Number of threads used to resolve remote BOMs (dependency, plugin and property management). Defaults to 4.
+     */
+    public static final String REMOTE_THREADS_PROP = "manipulation.remote.threads";
+
     @Requirement( role = Manipulator.class )
     private Map<String, Manipulator> manipulators;
 
@@ -75,6 +96,66 @@ public class ManipulationSession
         return !Boolean.valueOf( getUserProperties().getProperty( MANIPULATIONS_DISABLED_PROP, "false" ) );
     }
 
+    /**
+     * @see #PARSE_THREADS_PROP
+     *
+     * @return the number of threads to read the project POMs with.
+     * @throws ManipulationException if the property is not a number.
+     */
+    public int getParseThreads()
+        throws ManipulationException
+    {
+        return getIntegerProperty( PARSE_THREADS_PROP, 1 );
+    }
+
+    /**
+     * @see #WRITE_THREADS_PROP
+     *
+     * @return the number of threads to rewrite the changed POMs with.
+     * @throws ManipulationException if the property is not a number.
+     */
+    public int getWriteThreads()
+        throws ManipulationException
+    {
+        return getIntegerProperty( WRITE_THREADS_PROP, 1 );
+    }
+
+    /**
+     * @see #REMOTE_THREADS_PROP
+     *
+     * @return the number of threads to resolve remote BOMs with.
+     * @throws ManipulationException if the property is not a number.
+     */
+    public int getRemoteThreads()
+        throws ManipulationException
+    {
+        return getIntegerProperty( REMOTE_THREADS_PROP, 4 );
+    }
+
+    /**
+     * @see #WRITE_SKIP_UNCHANGED_PROP
+     *
+     * @return whether POMs with unchanged content should be left untouched on disk.
+     */
+    public boolean isWriteSkipUnchanged()
+    {
+        return Boolean.valueOf( getUserProperties().getProperty( WRITE_SKIP_UNCHANGED_PROP, "false" ) );
+    }
+
+    /**
+     * Retrieve an integer valued user property.
+     *
+     * @param name the property name.
+     * @param defaultValue the value to use if the property is not set, or is empty.
+     * @return the property value.
+     * @throws ManipulationException if the property is not a number.
+     */
+    public int getIntegerProperty( final String name, final int defaultValue )
+        throws ManipulationException
+    {
+        return UserProperties.getInteger( getUserProperties(), name, defaultValue );
+    }
+
     public void setState( final State state )
     {
         states.put( state.getClass(), state );
@@ -18,6 +18,7 @@ package org.commonjava.maven.ext.manip.impl;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.DependencyManagement;
 import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
 import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
 import org.commonjava.maven.atlas.ident.ref.InvalidRefException;
 import org.commonjava.maven.atlas.ident.ref.ProjectRef;
@@ -28,21 +29,20 @@ import org.commonjava.maven.ext.manip.spi.RemoteDependenciesSPI;
 import org.commonjava.maven.ext.manip.state.DependencyState;
 import org.commonjava.maven.ext.manip.state.DependencyState.VersionPropertyFormat;
 import org.commonjava.maven.ext.manip.state.State;
-import org.commonjava.maven.ext.manip.util.WildcardMap;
+import org.commonjava.maven.ext.manip.util.PropertyIndex;
+import org.commonjava.maven.ext.manip.util.VersionExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
-import static org.apache.commons.lang.StringUtils.join;
 import static org.commonjava.maven.ext.manip.util.IdUtils.ga;
 import static org.commonjava.maven.ext.manip.util.PropertiesUtils.getPropertiesByPrefix;
 
@@ -67,8 +67,14 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
    {
         final DependencyState state = session.getState( DependencyState.class );
 
+        // The manipulators are container singletons which may serve several runs (e.g. the CLI daemon), so start
+        // afresh rather than carrying property updates into the next project.
+        versionPropertyUpdateMap.clear();
+
         final Set<Project> result = new HashSet<Project>();
         final boolean strict = state.getStrict();
+        final PropertyIndex reactorProperties = new PropertyIndex( projects );
+        ModuleOverrideIndex moduleOverrides = null;
 
         for ( final Project project : projects )
         {
@@ -76,7 +82,12 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
 
             if ( overrides.size() > 0 )
             {
-                apply( session, project, model, overrides );
+                if ( moduleOverrides == null )
+                {
+                    moduleOverrides = createModuleOverrides( session, overrides );
+                }
+                apply( session, project, model, overrides, moduleOverrides.forModule( ga( project ) ),
+                       reactorProperties );
 
                 result.add( project );
             }
@@ -85,23 +96,29 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
         // If we've changed something now update any old properties with the new values.
         if (result.size() > 0)
         {
-            for (final String key : versionPropertyUpdateMap.keySet())
+            final List<Project> changed = new ArrayList<Project>( result.size() );
+            for ( final Project project : projects )
             {
-                boolean found = updateProperties( state, result, key, versionPropertyUpdateMap.get( key ) );
+                if ( result.contains( project ) )
+                {
+                    changed.add( project );
+                }
+            }
 
-                if ( found == false )
+            final PropertyUpdateGraph.Result updated =
+                new PropertyUpdateGraph( changed ).apply( state, versionPropertyUpdateMap );
+            for ( final String key : updated.getUnresolved() )
+            {
+                // Problem in this scenerio is that we know we have a property update map but we have not found a
+                // property to update. Its possible this property has been inherited from a parent. Override in the
+                // top pom for safety.
+                logger.info( "Unable to find a property for {} to update", key );
+                for ( final Project p : changed )
                 {
-                    // Problem in this scenerio is that we know we have a property update map but we have not found a
-                    // property to update. Its possible this property has been inherited from a parent. Override in the
-                    // top pom for safety.
-                    logger.info( "Unable to find a property for {} to update", key );
-                    for (final Project p : result)
+                    if ( p.isInheritanceRoot() )
                     {
-                        if ( p.isInheritanceRoot() )
-                        {
-                            logger.info( "Adding property {} with {} ", key, versionPropertyUpdateMap.get( key ) );
-                            p.getModel().getProperties().setProperty( key, versionPropertyUpdateMap.get( key ) );
-                        }
+                        logger.info( "Adding property {} with {} ", key, versionPropertyUpdateMap.get( key ) );
+                        p.getModel().getProperties().setProperty( key, versionPropertyUpdateMap.get( key ) );
                     }
                 }
             }
@@ -110,116 +127,54 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
     }
 
     /**
-     * Recursively update properties.
-     * 
-     * @param state
-     * @param projects
-     * @param key
-     * @param newValue
-     * @return
-     * @throws ManipulationException
+     * The overrides ProjectRef:version map has to be converted into Group|Artifact:Version map for usage by
+     * exclusions. This, and splitting out the exclusions, is done once for the whole reactor.
      */
-    private boolean updateProperties (DependencyState state, Set<Project> projects, String key, String newValue)
-                    throws ManipulationException
+    private ModuleOverrideIndex createModuleOverrides( final ManipulationSession session,
+                                                       final Map<ArtifactRef, String> overrides )
+        throws ManipulationException
     {
-        boolean found = false;
-        for ( final Project p : projects )
+        logger.debug( "Adding in dependency-exclusion properties..." );
+        final Map<String, String> exclusions =
+            getPropertiesByPrefix( session.getUserProperties(), DependencyState.DEPENDENCY_EXCLUSION_PREFIX );
+        try
         {
-            if ( p.getModel().getProperties().containsKey( key ) )
-            {
-                final String oldValue = p.getModel().getProperties().getProperty( key );
-                final String overrideVersion = newValue;
-
-                logger.info( "Updating property {} / {} with {} ", key, oldValue, newValue );
-
-                found = true;
-
-                if ( oldValue.startsWith( "${" ))
-                {
-                    if ( ! updateProperties( state, projects, oldValue.substring( 2, oldValue.indexOf( '}' ) ), newValue ))
-                    {
-                        logger.error( "Recursive property not found for {} with {} " , oldValue, newValue );
-                        return false;
-                    }
-                }
-                else
-                {
-                    if ( state.getStrict() )
-                    {
-                        if ( oldValue != null && !overrideVersion.startsWith( oldValue ) )
-                        {
-                            if ( state.getFailOnStrictViolation() )
-                            {
-                                throw new ManipulationException(
-                                                "Replacement: {} of original version: {} in property: {} violates the strict version-alignment rule!",
-                                                overrideVersion, oldValue, key );
-                            }
-                            else
-                            {
-                                logger.warn( "Replacement: {} of original version: {} in property: {} violates the strict version-alignment rule!",
-                                             overrideVersion, oldValue, key );
-                                // Ignore the dependency override. As found has been set to true it won't inject
-                                // a new property either.
-                                continue;
-                            }
-                        }
-                    }
-
-                    p.getModel().getProperties().setProperty( key, newValue );
-                }
-            }
+            return new ModuleOverrideIndex( overrides, exclusions, session.getProjects() );
+        }
+        catch (InvalidRefException e)
+        {
+            logger.error ("Invalid module exclusion override {} : {} ", exclusions, e.getMessage());
+            throw e;
         }
-        return found;
     }
 
     /**
      * Applies dependency overrides to the project.
      *
-     * The overrides ProjectRef:version map has to be converted into Group|Artifact:Version map
-     * for usage by exclusions.
+     * @param forModule the overrides which apply to this project.
+     * @param properties index of the properties of the reactor, used to resolve existing versions.
      */
     private void apply( final ManipulationSession session, final Project project, final Model model,
-                          final Map<ArtifactRef, String> overrides )
+                        final Map<ArtifactRef, String> overrides, final ModuleOverrideIndex.Overrides forModule,
+                        final PropertyIndex properties )
         throws ManipulationException
     {
-        // Map of Group : Map of artifactId [ may be wildcard ] : value
-        final WildcardMap explicitOverrides = new WildcardMap();
+        // Index of GA : version
+        final GAVersionIndex moduleOverrides = forModule.versions;
         final String projectGA = ga( project );
 
-        // TODO: FIXME: Is it possible to avoid the secondary override map and just convert everything
-        // to projectref's as required?
-
-        // Convert into a Map of GA : version
-        Map<String, String> moduleOverrides = new LinkedHashMap<String, String>();
-        for (final ProjectRef var : overrides.keySet())
-        {
-            moduleOverrides.put( var.asProjectRef()
-                                    .toString(), overrides.get( var ) );
-        }
-
-        logger.debug( "Adding in dependency-exclusion properties..." );
-        moduleOverrides.putAll( getPropertiesByPrefix( session.getUserProperties(),
-                                                         DependencyState.DEPENDENCY_EXCLUSION_PREFIX ) );
-
-        moduleOverrides = removeReactorGAs( session, moduleOverrides );
-        try
-        {
-            moduleOverrides = applyModuleVersionOverrides( projectGA, moduleOverrides, explicitOverrides );
-        }
-        catch (InvalidRefException e)
-        {
-            logger.error ("Invalid module exclusion override {} : {} ", moduleOverrides, explicitOverrides);
-            throw e;
-        }
         if ( project.isInheritanceRoot() )
         {
             // Handle the situation where the top level parent refers to a prior build that is in the BOM.
-            if ( project.getParent() != null && moduleOverrides.containsKey( ga( project.getParent() ) ) )
+            final Parent parent = project.getParent();
+            final String parentOverride =
+                parent == null ? null : moduleOverrides.get( parent.getGroupId(), parent.getArtifactId() );
+            if ( parentOverride != null )
             {
                 logger.debug( " Modifying parent reference from {} to {}",
-                              model.getParent().getVersion(), moduleOverrides.get( ga( project.getParent() ) ));
+                              model.getParent().getVersion(), parentOverride );
                 model.getParent()
-                     .setVersion( moduleOverrides.get( ga( project.getParent() ) ) );
+                     .setVersion( parentOverride );
             }
 
             if ( session.getState( DependencyState.class ).getOverrideDependencies() )
@@ -240,52 +195,20 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
                 logger.debug( "Applying overrides to managed dependencies for top-pom: {}\n{}", projectGA,
                               moduleOverrides );
 
-                final Map<String, String> nonMatchingVersionOverrides =
-                    applyOverrides( session, project, dependencies, moduleOverrides );
+                final BitSet matched = new BitSet( moduleOverrides.size() );
+                applyOverrides( session, project, dependencies, moduleOverrides, matched, properties );
 
-                final Map<String, String> matchedOverrides = new LinkedHashMap<String, String>(moduleOverrides);
-                matchedOverrides.keySet().removeAll( nonMatchingVersionOverrides.keySet() );
+                final Map<String, String> matchedOverrides = moduleOverrides.toMap( matched, true );
 
-                applyExplicitOverrides( versionPropertyUpdateMap, explicitOverrides, dependencies );
+                applyExplicitOverrides( versionPropertyUpdateMap, forModule, dependencies );
 
                 // Add/override a property to the build for each override
                 addVersionOverrideProperties( session, matchedOverrides, model.getProperties() );
 
                 if ( session.getState( DependencyState.class ).getOverrideTransitive() )
                 {
-                    final List<Dependency> extraDeps = new ArrayList<Dependency>();
-
-                    // Add dependencies to Dependency Management which did not match any existing dependency
-                    for ( final ArtifactRef var : overrides.keySet() )
-                    {
-                        if ( ! nonMatchingVersionOverrides.containsKey( var.asProjectRef().toString() ))
-                        {
-                            // This one in the remote pom was already dealt with ; continue.
-                            continue;
-                        }
-
-                        final Dependency newDependency = new Dependency();
-                        newDependency.setGroupId( var.getGroupId() );
-                        newDependency.setArtifactId( var.getArtifactId() );
-                        newDependency.setType( var.getType() );
-                        newDependency.setClassifier( var.getClassifier() );
-                        if (var.isOptional())
-                        {
-                            newDependency.setOptional( var.isOptional() );
-                        }
-
-                        final String artifactVersion = moduleOverrides.get( var.asProjectRef()
-                                                                               .toString() );
-                        newDependency.setVersion( artifactVersion );
-
-                        extraDeps.add (newDependency);
-                        logger.debug( "New entry added to <DependencyManagement/> - {} : {} ", var, artifactVersion );
-
-                        // Add/override a property to the build for each override
-                        addVersionOverrideProperties( session, nonMatchingVersionOverrides, model.getProperties() );
-                    }
-
-                    dependencyManagement.getDependencies().addAll( 0, extraDeps );
+                    injectTransitiveOverrides( session, model, dependencyManagement, overrides, moduleOverrides,
+                                               matched );
                 }
                 else
                 {
@@ -306,8 +229,9 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
                             dependencyManagement != null )
             {
                 logger.debug( "Applying overrides to managed dependencies for: {}\n{}", projectGA, moduleOverrides );
-                applyOverrides( session, project, dependencyManagement.getDependencies(), moduleOverrides );
-                applyExplicitOverrides( versionPropertyUpdateMap, explicitOverrides, dependencyManagement.getDependencies() );
+                applyOverrides( session, project, dependencyManagement.getDependencies(), moduleOverrides, null,
+                                properties );
+                applyExplicitOverrides( versionPropertyUpdateMap, forModule, dependencyManagement.getDependencies() );
             }
             else
             {
@@ -320,8 +244,8 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
             logger.debug( "Applying overrides to concrete dependencies for: {}\n{}", projectGA, moduleOverrides );
             // Apply overrides to project direct dependencies
             final List<Dependency> projectDependencies = model.getDependencies();
-            applyOverrides( session, project, projectDependencies, moduleOverrides );
-            applyExplicitOverrides( versionPropertyUpdateMap, explicitOverrides, projectDependencies );
+            applyOverrides( session, project, projectDependencies, moduleOverrides, null, properties );
+            applyExplicitOverrides( versionPropertyUpdateMap, forModule, projectDependencies );
         }
         else
         {
@@ -329,25 +253,79 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
         }
     }
 
+    /**
+     * Adds the overrides which did not match any existing dependency to the dependency management of the top-level
+     * project, ahead of its existing entries. The overrides are walked once and the existing entries copied once, and
+     * the version override properties for the non-matching overrides are added once if anything was added.
+     *
+     * @param matched the entries of moduleOverrides which matched an existing managed dependency.
+     */
+    private void injectTransitiveOverrides( final ManipulationSession session, final Model model,
+                                            final DependencyManagement dependencyManagement,
+                                            final Map<ArtifactRef, String> overrides,
+                                            final GAVersionIndex moduleOverrides, final BitSet matched )
+    {
+        final List<Dependency> existing = dependencyManagement.getDependencies();
+        final List<Dependency> result = new ArrayList<Dependency>( overrides.size() + existing.size() );
+
+        // Add dependencies to Dependency Management which did not match any existing dependency
+        for ( final ArtifactRef var : overrides.keySet() )
+        {
+            final int entry = moduleOverrides.indexOf( var.getGroupId(), var.getArtifactId() );
+            if ( entry < 0 || matched.get( entry ) )
+            {
+                // This one in the remote pom was already dealt with ; continue.
+                continue;
+            }
+
+            final Dependency newDependency = new Dependency();
+            newDependency.setGroupId( var.getGroupId() );
+            newDependency.setArtifactId( var.getArtifactId() );
+            newDependency.setType( var.getType() );
+            newDependency.setClassifier( var.getClassifier() );
+            if (var.isOptional())
+            {
+                newDependency.setOptional( var.isOptional() );
+            }
+
+            final String artifactVersion = moduleOverrides.getVersion( entry );
+            newDependency.setVersion( artifactVersion );
+
+            result.add( newDependency );
+            logger.debug( "New entry added to <DependencyManagement/> - {} : {} ", var, artifactVersion );
+        }
+
+        if ( result.isEmpty() )
+        {
+            return;
+        }
+
+        // Add/override a property to the build for each override
+        addVersionOverrideProperties( session, moduleOverrides.toMap( matched, false ), model.getProperties() );
+
+        result.addAll( existing );
+        dependencyManagement.setDependencies( result );
+    }
+
     /**
      * Apply explicit overrides to a set of dependencies from a project. The explicit overrides come from
      * dependencyExclusion. However they have to be separated out from standard overrides so we can easily
      * ignore any property references (and overwrite them).
      *
-     * @param explicitOverrides
+     * @param forModule the overrides which apply to the project, holding the explicit overrides.
      * @param dependencies
      * @throws ManipulationException
      */
-    private void applyExplicitOverrides( final Map<String, String> versionPropertyUpdateMap, final WildcardMap explicitOverrides, final List<Dependency> dependencies ) throws ManipulationException
+    private void applyExplicitOverrides( final Map<String, String> versionPropertyUpdateMap, final ModuleOverrideIndex.Overrides forModule, final List<Dependency> dependencies ) throws ManipulationException
     {
         // Apply matching overrides to dependencies
         for ( final Dependency dependency : dependencies )
         {
-            final ProjectRef groupIdArtifactId = new ProjectRef( dependency.getGroupId(), dependency.getArtifactId() );
+            final String overrideVersion = forModule.getExplicitOverride( dependency.getGroupId(), dependency.getArtifactId() );
 
-            if ( explicitOverrides.containsKey( groupIdArtifactId ) )
+            if ( overrideVersion != null )
             {
-                final String overrideVersion = explicitOverrides.get( groupIdArtifactId );
+                final String groupIdArtifactId = ga( dependency.getGroupId(), dependency.getArtifactId() );
                 final String oldVersion = dependency.getVersion();
 
                 if ( overrideVersion == null || overrideVersion.length() == 0 || oldVersion == null
@@ -366,25 +344,18 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
                 {
                     logger.debug( "Force aligning {} to {}.", groupIdArtifactId, overrideVersion );
 
-                    if (oldVersion.startsWith( "${" ) )
+                    final VersionExpression oldExpression = VersionExpression.parse( oldVersion );
+                    if ( oldExpression.isReference() )
                     {
-                        final int endIndex = oldVersion.indexOf( '}');
-                        final String oldProperty = oldVersion.substring( 2, endIndex);
-
-                        if (endIndex != oldVersion.length() - 1)
-                        {
-                            throw new ManipulationException
-                            ("NYI : handling for versions (" + oldVersion + ") with multiple embedded properties is NYI. ");
-                        }
+                        final String oldProperty = oldExpression.getProperty();
                         logger.debug ("Original version was a property mapping; caching new fixed value for update {} -> {}",
                                       oldProperty, overrideVersion);
 
-                        final String oldVersionProp = oldVersion.substring( 2, oldVersion.length() - 1 );
-
-                        versionPropertyUpdateMap.put( oldVersionProp, overrideVersion );
+                        versionPropertyUpdateMap.put( oldProperty, overrideVersion );
                     }
                     else
                     {
+                        // A version combining several properties can't be mapped back onto them; replace it.
                         dependency.setVersion( overrideVersion );
                     }
                 }
@@ -393,25 +364,23 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
     }
 
     /**
-     * Apply a set of version overrides to a list of dependencies. Return a set of the overrides which were not applied.
+     * Apply a set of version overrides to a list of dependencies, recording which of the overrides were applied.
      * @param session
      *
      * @param dependencies The list of dependencies
-     * @param overrides The map of dependency version overrides
-     * @return The map of overrides that were not matched in the dependencies
+     * @param overrides The index of dependency version overrides
+     * @param matched Set to the entries of the overrides which matched a dependency; may be null.
+     * @param properties index of the properties of the reactor, used to resolve existing versions.
      * @throws ManipulationException
      */
-    private Map<String, String> applyOverrides( final ManipulationSession session, final Project project,
-                                                final List<Dependency> dependencies, final Map<String, String> overrides )
+    private void applyOverrides( final ManipulationSession session, final Project project,
+                                 final List<Dependency> dependencies, final GAVersionIndex overrides,
+                                 final BitSet matched, final PropertyIndex properties )
         throws ManipulationException
     {
-        // Duplicate the override map so unused overrides can be easily recorded
-        final Map<String, String> unmatchedVersionOverrides = new LinkedHashMap<String, String>();
-        unmatchedVersionOverrides.putAll( overrides );
-
         if ( dependencies == null )
         {
-            return unmatchedVersionOverrides;
+            return;
         }
 
         final DependencyState state = session.getState( DependencyState.class );
@@ -420,11 +389,12 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
         // Apply matching overrides to dependencies
         for ( final Dependency dependency : dependencies )
         {
-            final String groupIdArtifactId = ga( dependency.getGroupId(), dependency.getArtifactId() );
-            if ( overrides.containsKey( groupIdArtifactId ) )
+            final int entry = overrides.indexOf( dependency.getGroupId(), dependency.getArtifactId() );
+            if ( entry >= 0 )
             {
+                final String groupIdArtifactId = overrides.getKey( entry );
                 final String oldVersion = dependency.getVersion();
-                final String overrideVersion = overrides.get( groupIdArtifactId );
+                final String overrideVersion = overrides.getVersion( entry );
 
                 if ( overrideVersion == null || overrideVersion.length() == 0 || oldVersion == null
                     || oldVersion.length() == 0 )
@@ -434,28 +404,21 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
                 else
                 {
                     // Handle the situation where we are updating a dependency that has an existing property - in this
-                    // case we want to update the property instead.
-                    // TODO: Handle the scenario where the version might be ${....}${....}
-                    if (oldVersion.startsWith( "${" ) )
+                    // case we want to update the property instead. A version combining several properties, e.g.
+                    // ${....}.${....}, can't be mapped back onto them so it is replaced like a literal version, but
+                    // compared using its resolved value.
+                    final VersionExpression oldExpression = VersionExpression.parse( oldVersion );
+                    if ( oldExpression.isReference() )
                     {
-                        final int endIndex = oldVersion.indexOf( '}');
-                        final String oldProperty = oldVersion.substring( 2, endIndex);
-
-                        if (endIndex != oldVersion.length() - 1)
-                        {
-                            throw new ManipulationException
-                                ("NYI : handling for versions (" + oldVersion + ") with multiple embedded properties is NYI. ");
-                        }
+                        final String oldProperty = oldExpression.getProperty();
                         logger.debug ("Original version was a property mapping; caching new value for update {} -> {}",
                                      oldProperty, overrideVersion);
 
-                        final String oldVersionProp = oldVersion.substring( 2, oldVersion.length() - 1 );
-
-                        versionPropertyUpdateMap.put( oldVersionProp, overrideVersion );
+                        versionPropertyUpdateMap.put( oldProperty, overrideVersion );
                     }
                     else
                     {
-                        if ( strict && !overrideVersion.startsWith( oldVersion ) )
+                        if ( strict && !overrideVersion.startsWith( properties.resolve( oldExpression ) ) )
                         {
                             if ( state.getFailOnStrictViolation() )
                             {
@@ -475,196 +438,15 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
                             dependency.setVersion( overrideVersion );
                         }
                     }
-                    unmatchedVersionOverrides.remove( groupIdArtifactId );
-                }
-            }
-        }
-
-        return unmatchedVersionOverrides;
-    }
-
-    /**
-     * Remove version overrides which refer to projects in the current reactor.
-     * Projects in the reactor include things like inter-module dependencies
-     * which should never be overridden.
-     * @param session
-     *
-     * @param versionOverrides
-     * @return A new Map with the reactor GAs removed.
-     */
-    private Map<String, String> removeReactorGAs( final ManipulationSession session,
-                                                  final Map<String, String> versionOverrides )
-    {
-        final Map<String, String> reducedVersionOverrides = new LinkedHashMap<String, String>( versionOverrides );
-        for ( final Project project : session.getProjects())
-        {
-            final String reactorGA = ga( project.getModel() );
-            reducedVersionOverrides.remove( reactorGA );
-        }
-        return reducedVersionOverrides;
-    }
-
-    /**
-     * Remove module overrides which do not apply to the current module. Searches the full list of version overrides
-     * for any keys which contain the '@' symbol.  Removes these from the version overrides list, and add them back
-     * without the '@' symbol only if they apply to the current module.
-     *
-     * @param projectGA
-     * @param originalOverrides The full list of version overrides, both global and module specific
-     * @param explicitOverrides
-     *
-     * @return The map of global and module specific overrides which apply to the given module
-     * @throws ManipulationException
-     */
-    private Map<String, String> applyModuleVersionOverrides( final String projectGA,
-                                                             final Map<String, String> originalOverrides, final WildcardMap explicitOverrides )
-        throws ManipulationException
-    {
-        final Map<String, String> remainingOverrides = new LinkedHashMap<String, String>( originalOverrides );
-
-        logger.debug( "Calculating module-specific version overrides. Starting with:\n  {}",
-                      join(remainingOverrides.entrySet(), "\n  ") );
-
-        final Map<String, String> moduleVersionOverrides = new LinkedHashMap<String, String>();
-        final Set<String> processedKeys = new HashSet<String>();
-
-        // These modes correspond to two different kinds of passes over the available override properties:
-        // 1. Module-specific: Don't process wildcard overrides here, allow module-specific settings to take precedence.
-        // 2. Wildcards: Add these IF there is no corresponding module-specific override.
-        final boolean wildcardMode[] = { false, true };
-        for ( int i = 0; i < wildcardMode.length; i++ )
-        {
-            for ( final String currentKey : new HashSet<String>(remainingOverrides.keySet()))
-            {
-                logger.debug( "Processing key for override: {}", currentKey );
-
-                if ( !currentKey.contains( "@" ) )
-                {
-                    logger.debug( "Not an override. Skip." );
-                    continue;
-                }
-
-                // add to list of processed keys to prevent it from being transferred over at the end, from the remainingKeys map.
-                processedKeys.add( currentKey );
-
-                final String currentValue = remainingOverrides.get( currentKey );
-                final boolean isWildcard = currentKey.endsWith( "@*" );
-                logger.debug( "Is wildcard? {}", isWildcard );
-
-                // process module-specific overrides (first)
-                if ( !wildcardMode[i] )
-                {
-                    // skip wildcard overrides in this mode
-                    if ( isWildcard )
-                    {
-                        logger.debug( "Not currently in wildcard mode. Skip." );
-                        continue;
-                    }
-
-                    final String[] artifactAndModule = currentKey.split( "@" );
-                    if ( artifactAndModule.length != 2 )
-                    {
-                        throw new ManipulationException( "Invalid format for exclusion key " + currentKey );
-                    }
-                    final String artifactGA = artifactAndModule[0];
-                    final String moduleGA = artifactAndModule[1];
-
-                    logger.debug( "For artifact override: {}, comparing parsed module: {} to current project: {}",
-                                  artifactGA, moduleGA, projectGA );
-
-                    if ( moduleGA.equals( projectGA ) )
-                    {
-                        if ( currentValue != null && currentValue.length() > 0 )
-                        {
-                            explicitOverrides.put( ProjectRef.parse(artifactGA), currentValue );
-                            logger.debug( "Overriding module dependency for {} with {} : {}", moduleGA, artifactGA,
-                                          currentValue );
-                        }
-                        else
-                        {
-                            //remove from remaining, since it's set to an empty value to disable override from the BOM
-                            remainingOverrides.remove( artifactGA );
-                            logger.debug( "Ignoring module dependency override for {} " + moduleGA );
-                        }
-                    }
-                }
-                // process wildcard overrides (second)
-                else
-                {
-                    // skip module-specific overrides in this mode
-                    if ( !isWildcard )
+                    if ( matched != null )
                     {
-                        logger.debug( "Currently in wildcard mode. Skip." );
-                        continue;
-                    }
-
-                    final String artifactGA = currentKey.substring( 0, currentKey.length() - 2 );
-                    logger.debug( "For artifact override: {}, checking if current overrides already contain a module-specific version.",
-                                  artifactGA );
-
-                    if ( explicitOverrides.containsKey( ProjectRef.parse(artifactGA) ) )
-                    {
-                        logger.debug( "For artifact override: {}, current overrides already contain a module-specific version. Skip.",
-                                      artifactGA );
-                        continue;
-                    }
-
-                    // I think this is only used for e.g. dependencyExclusion.groupId:artifactId@*=<explicitVersion>
-                    if ( currentValue != null && currentValue.length() > 0 )
-                    {
-                        logger.debug( "Overriding module dependency for {} with {} : {}", projectGA, artifactGA,
-                                      currentValue );
-                        explicitOverrides.put(ProjectRef.parse(artifactGA), currentValue);
-                    }
-                    else
-                    {
-                        // If we have a wildcard artifact we want to replace any prior explicit overrides
-                        // with this one i.e. this takes precedence.
-                        if ( artifactGA.endsWith(":*"))
-                        {
-                            final ProjectRef artifactGAPr = ProjectRef.parse(artifactGA);
-                            final Iterator<String> it = remainingOverrides.keySet().iterator();
-                            while (it.hasNext())
-                            {
-                                final ProjectRef pr = ProjectRef.parse(it.next());
-                                if ( artifactGAPr.getGroupId().equals(pr.getGroupId()))
-                                {
-                                    logger.debug ( "Removing artifactGA " + pr + " from overrides");
-                                    it.remove();
-                                }
-                            }
-                        }
-                        else
-                        {
-                            //remove from remaining, since it's set to an empty value to disable override from the BOM
-                            remainingOverrides.remove(artifactGA);
-                            logger.debug("Removing artifactGA " + artifactGA + " from overrides");
-                        }
-                        logger.debug( "Ignoring module dependency override for {} " + projectGA );
+                        matched.set( entry );
                     }
                 }
             }
         }
-
-        // now, go back and fill in any overrides coming from BOMs that weren't overridden or otherwise processed (eg. irrelevant module-specific overrides)
-        for ( final Map.Entry<String, String> entry : remainingOverrides.entrySet() )
-        {
-            final String key = entry.getKey();
-            if ( !processedKeys.contains( key ) && !moduleVersionOverrides.containsKey( key ) )
-            {
-                final String value = entry.getValue();
-                logger.debug( "back-filling with override from original map: '{}' = '{}'", key, value );
-
-                moduleVersionOverrides.put( key, value );
-            }
-        }
-
-        logger.debug( "Returning module-specific overrides:\n{}", join( moduleVersionOverrides.entrySet(), "\n  " ) );
-
-        return moduleVersionOverrides;
     }
 
-
     /***
      * Add properties to the build which match the version overrides.
      * The property names are in the format
@@ -697,14 +479,16 @@ abstract public class CommonDependencyManipulation implements RemoteDependencies
             }
         }
 
-        for ( final String currentGA : overrides.keySet() )
+        for ( final Map.Entry<String, String> override : overrides.entrySet() )
         {
+            final String currentGA = override.getKey();
             final String versionPropName =
                 "version."
-                    + ( result == VersionPropertyFormat.VGA ? currentGA.replace( ":", "." ) : currentGA.split( ":" )[0] );
+                    + ( result == VersionPropertyFormat.VGA ? currentGA.replace( ':', '.' )
+                                    : currentGA.substring( 0, currentGA.indexOf( ':' ) ) );
 
-            logger.debug( "Adding version override property for {} of {}:{}", currentGA, versionPropName, overrides.get( currentGA ));
-            props.setProperty( versionPropName, overrides.get( currentGA ) );
+            logger.debug( "Adding version override property for {} of {}:{}", currentGA, versionPropName, override.getValue() );
+            props.setProperty( versionPropName, override.getValue() );
         }
     }
 }
@@ -102,12 +102,14 @@ public class DependencyManipulator extends CommonDependencyManipulation
             return overrides;
         }
 
-        final ListIterator<ProjectVersionRef> iter = gavs.listIterator( gavs.size() );
+        final List<Map<ArtifactRef, String>> boms =
+            effectiveModelBuilder.getRemoteDependencyVersionOverrides( gavs, session.getRemoteThreads() );
+
+        final ListIterator<Map<ArtifactRef, String>> iter = boms.listIterator( boms.size() );
         // Iterate in reverse order so that the first GAV in the list overwrites the last
         while ( iter.hasPrevious() )
         {
-            final ProjectVersionRef ref = iter.previous();
-            overrides.putAll( effectiveModelBuilder.getRemoteDependencyVersionOverrides( ref ) );
+            overrides.putAll( iter.previous() );
         }
 
         return overrides;
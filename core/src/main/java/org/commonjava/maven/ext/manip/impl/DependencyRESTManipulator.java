@@ -25,45 +25,89 @@ import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
 import org.commonjava.maven.atlas.ident.ref.TypeAndClassifier;
 import org.commonjava.maven.ext.manip.ManipulationException;
 import org.commonjava.maven.ext.manip.ManipulationSession;
+import org.commonjava.maven.ext.manip.io.PomIO;
 import org.commonjava.maven.ext.manip.model.Project;
+import org.commonjava.maven.ext.manip.rest.CachingVersionTranslator;
 import org.commonjava.maven.ext.manip.rest.DefaultVersionTranslator;
+import org.commonjava.maven.ext.manip.rest.FileVersionTranslator;
 import org.commonjava.maven.ext.manip.rest.VersionTranslator;
+import org.commonjava.maven.ext.manip.rest.exception.RestException;
+import org.commonjava.maven.ext.manip.state.CommonDependencyState;
 import org.commonjava.maven.ext.manip.state.DependencyRESTState;
 import org.commonjava.maven.ext.manip.state.State;
 import org.commonjava.maven.ext.manip.state.VersioningState;
+import org.commonjava.maven.ext.manip.util.GAMatcher;
+import org.commonjava.maven.ext.manip.util.NamedThreadFactory;
+import org.commonjava.maven.ext.manip.util.PropertyIndex;
+import org.commonjava.maven.ext.manip.util.VersionExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.commonjava.maven.ext.manip.util.IdUtils.ga;
+import static org.commonjava.maven.ext.manip.util.PropertiesUtils.getPropertiesByPrefix;
 
 /**
  * This Manipulator runs first. It makes a REST call to an external service to load the GAVs to align the project version
  * and dependencies to.
  * It utilises the majority of the CommonDependencyManipulation code to change the dependencies and injects the Project GA versions
  * into the VersioningState in case the VersioningManipulator has been activated.
+ * <p>
+ * If {@link DependencyRESTState#REST_PREFETCH} is set the GAVs with literal versions are sent to the REST service in
+ * the background as each POM is read, so that translation overlaps with reading the rest of the build; the scan then
+ * only requests whatever is left (e.g. property-based versions) and joins the outstanding requests.
+ * </p>
  */
 @Component( role = Manipulator.class, hint = "dependency-rest-manipulator" )
 public class DependencyRESTManipulator
         extends CommonDependencyManipulation
-        implements Manipulator
+        implements Manipulator, PomIO.ProjectListener
 {
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     private VersionTranslator restEndpoint;
 
     private Map<ProjectVersionRef, String> restResult = new HashMap<ProjectVersionRef, String>();
-    private ArrayList<ProjectVersionRef> restParam = new ArrayList<ProjectVersionRef>();
 
     private Set<ArtifactRef> localDeps = new HashSet<ArtifactRef>();
 
+    /**
+     * Number of dependencies not sent to the REST service as their version cannot change (reactor modules referenced
+     * via ${project.version}).
+     */
+    private int pruned;
+
+    private GAMatcher excluded = new GAMatcher();
+
+    private boolean prefetch;
+
+    private int prefetchBatchSize;
+
+    private ExecutorService prefetchExecutor;
+
+    private final List<Future<Map<ProjectVersionRef, String>>> prefetched =
+        new ArrayList<Future<Map<ProjectVersionRef, String>>>();
+
+    private final Set<ProjectVersionRef> prefetchRequested = new HashSet<ProjectVersionRef>();
+
+    private List<ProjectVersionRef> prefetchPending = new ArrayList<ProjectVersionRef>();
 
     protected DependencyRESTManipulator()
     {
@@ -71,12 +115,128 @@ public class DependencyRESTManipulator
 
     @Override
     public void init( final ManipulationSession session )
+        throws ManipulationException
     {
         final Properties userProps = session.getUserProperties();
         DependencyRESTState state = new DependencyRESTState( userProps );
         session.setState( state );
 
-        restEndpoint = new DefaultVersionTranslator( state.getRESTURL() );
+        final int chunkSize = session.getIntegerProperty( DependencyRESTState.REST_CHUNK_SIZE,
+                                                          DefaultVersionTranslator.DEFAULT_CHUNK_SIZE );
+        final int concurrency = session.getIntegerProperty( DependencyRESTState.REST_CONCURRENCY,
+                                                            DefaultVersionTranslator.DEFAULT_CONCURRENCY );
+
+        if ( state.isFileTranslator() )
+        {
+            // Without a translation file the manipulator is disabled, so there is nothing to open.
+            restEndpoint = state.isEnabled() ? new FileVersionTranslator( new File( state.getTranslationFile() ) )
+                            : null;
+        }
+        else
+        {
+            // Likewise without a URL, and none of its configuration need be read.
+            restEndpoint = state.isEnabled() ? createRESTTranslator( session, state, chunkSize, concurrency ) : null;
+        }
+
+        // Dependencies excluded from alignment in every module need not be translated.
+        excluded = new GAMatcher();
+        for ( final String key : getPropertiesByPrefix( userProps,
+                                                         CommonDependencyState.DEPENDENCY_EXCLUSION_PREFIX ).keySet() )
+        {
+            if ( key.endsWith( "@*" ) )
+            {
+                excluded.put( ProjectRef.parse( key.substring( 0, key.length() - 2 ) ), key );
+            }
+        }
+
+        // Start afresh so that a run within the same JVM does not carry over the previous request, even if this one is
+        // disabled and skips the scan.
+        localDeps = new HashSet<ArtifactRef>();
+        restResult = new HashMap<ProjectVersionRef, String>();
+        pruned = 0;
+
+        shutdownPrefetch();
+        prefetchRequested.clear();
+        prefetchPending = new ArrayList<ProjectVersionRef>();
+        prefetch = session.isEnabled() && state.isEnabled()
+            && Boolean.parseBoolean( userProps.getProperty( DependencyRESTState.REST_PREFETCH ) );
+        prefetchBatchSize = chunkSize > 0 ? chunkSize : DefaultVersionTranslator.DEFAULT_CHUNK_SIZE;
+    }
+
+    private VersionTranslator createRESTTranslator( final ManipulationSession session,
+                                                    final DependencyRESTState state, final int chunkSize,
+                                                    final int concurrency )
+        throws ManipulationException
+    {
+        final Properties userProps = session.getUserProperties();
+
+        final DefaultVersionTranslator translator =
+            new DefaultVersionTranslator( state.getRESTURL(), chunkSize, concurrency );
+        translator.setTimeouts( session.getIntegerProperty( DependencyRESTState.REST_CONNECT_TIMEOUT,
+                                                            DefaultVersionTranslator.DEFAULT_CONNECT_TIMEOUT ),
+                                session.getIntegerProperty( DependencyRESTState.REST_READ_TIMEOUT,
+                                                            DefaultVersionTranslator.DEFAULT_READ_TIMEOUT ) );
+        translator.setRetries( session.getIntegerProperty( DependencyRESTState.REST_RETRIES,
+                                                           DefaultVersionTranslator.DEFAULT_RETRIES ),
+                               session.getIntegerProperty( DependencyRESTState.REST_RETRY_DELAY,
+                                                           (int) DefaultVersionTranslator.DEFAULT_RETRY_DELAY ) );
+        translator.setCircuitBreaker(
+            session.getIntegerProperty( DependencyRESTState.REST_CIRCUIT_BREAKER_THRESHOLD,
+                                        DefaultVersionTranslator.DEFAULT_CIRCUIT_BREAKER_THRESHOLD ),
+            session.getIntegerProperty( DependencyRESTState.REST_CIRCUIT_BREAKER_RESET,
+                                        (int) DefaultVersionTranslator.DEFAULT_CIRCUIT_BREAKER_RESET ) );
+        translator.setGzip( Boolean.parseBoolean( userProps.getProperty( DependencyRESTState.REST_GZIP ) ) );
+        translator.setGroupedFormat(
+            Boolean.parseBoolean( userProps.getProperty( DependencyRESTState.REST_GROUPED_FORMAT ) ) );
+        VersionTranslator result = translator;
+
+        final int cacheTTL = session.getIntegerProperty( DependencyRESTState.REST_CACHE_TTL, 0 );
+        if ( cacheTTL > 0 )
+        {
+            final File cacheDir = new File( userProps.getProperty( DependencyRESTState.REST_CACHE_DIR,
+                                                                   System.getProperty( "user.home" )
+                                                                                   + "/.pme/rest-cache" ) );
+            result = new CachingVersionTranslator( result, state.getRESTURL(), cacheDir, cacheTTL * 1000L );
+        }
+        return result;
+    }
+
+    /**
+     * Queues the project GAV and any dependency GAVs with a literal version for translation, sending a request in the
+     * background whenever a full batch has accumulated. Versions using properties are left for the scan as the
+     * properties may be defined in POMs which have not been read yet.
+     */
+    @Override
+    public void projectRead( final Project project )
+        throws ManipulationException
+    {
+        if ( !prefetch )
+        {
+            return;
+        }
+
+        queuePrefetch( project.getKey() );
+        queuePrefetch( project.getManagedDependencies() );
+        queuePrefetch( project.getDependencies() );
+
+        final List<Profile> profiles = project.getModel().getProfiles();
+        if ( profiles != null )
+        {
+            for ( Profile p : profiles )
+            {
+                if ( p.getDependencyManagement() != null )
+                {
+                    queuePrefetch( p.getDependencyManagement().getDependencies() );
+                }
+                queuePrefetch( p.getDependencies() );
+            }
+        }
+
+        if ( prefetchPending.size() >= prefetchBatchSize )
+        {
+            submitPrefetch( prefetchPending );
+            prefetchPending = new ArrayList<ProjectVersionRef>();
+        }
     }
 
     /**
@@ -94,14 +254,18 @@ public class DependencyRESTManipulator
             return;
         }
 
-        // Iterate over current project set and populate list of dependencies and project GAs.
+        final Set<String> reactorGAs = new HashSet<String>();
         for ( final Project project : projects )
         {
-            // TODO: Check this : For the rest API I think we need to check every project GA not just inheritance root.
-            restParam.add( project.getKey() );
+            reactorGAs.add( ga( project ) );
+        }
+        final PropertyIndex properties = new PropertyIndex( projects );
 
-            recordDependencies( projects, localDeps, project.getManagedDependencies() );
-            recordDependencies( projects, localDeps, project.getDependencies() );
+        // Iterate over current project set and populate list of dependencies.
+        for ( final Project project : projects )
+        {
+            recordDependencies( properties, reactorGAs, localDeps, project.getManagedDependencies() );
+            recordDependencies( properties, reactorGAs, localDeps, project.getDependencies() );
 
             List<Profile> profiles = project.getModel().getProfiles();
             if ( profiles != null )
@@ -110,9 +274,10 @@ public class DependencyRESTManipulator
                 {
                     if ( p.getDependencyManagement() != null )
                     {
-                        recordDependencies( projects, localDeps, p.getDependencyManagement().getDependencies() );
+                        recordDependencies( properties, reactorGAs, localDeps,
+                                            p.getDependencyManagement().getDependencies() );
                     }
-                    recordDependencies( projects, localDeps, p.getDependencies() );
+                    recordDependencies( properties, reactorGAs, localDeps, p.getDependencies() );
                 }
             }
         }
@@ -127,6 +292,21 @@ public class DependencyRESTManipulator
 
         // Call the REST to populate the result.
         restResult = (Map<ProjectVersionRef, String>) load ( state, session );
+        restResult = restResult == null ? new HashMap<ProjectVersionRef, String>() : restResult;
+
+        final String recordFile = session.getUserProperties().getProperty( DependencyRESTState.REST_RECORD_FILE );
+        if ( recordFile != null && recordFile.length() > 0 )
+        {
+            try
+            {
+                FileVersionTranslator.write( new File( recordFile ), restResult );
+                logger.info( "Recorded {} translations to {}", restResult.size(), recordFile );
+            }
+            catch ( IOException e )
+            {
+                throw new ManipulationException( "Unable to record translations to %s", e, recordFile );
+            }
+        }
 
         // Parse the rest result for the project GAs and store them in versioning state for use
         // there by incremental suffix calculation.
@@ -187,17 +367,111 @@ public class DependencyRESTManipulator
         return changed;
     }
 
+    /**
+     * Builds the request from the project GAVs followed by the recorded dependencies. Each GAV is sent once, however
+     * many modules, profiles or types reference it; dependencies excluded from alignment in every module via
+     * <code>dependencyExclusion.groupId:artifactId@*</code> are not sent at all.
+     */
     @Override
     public Map<? extends ProjectRef, String> load ( final State state, final ManipulationSession session )
             throws ManipulationException
     {
-        for ( ArtifactRef p : localDeps)
+        final List<Project> projects = session.getProjects();
+
+        // The project GAVs are always requested as the VersioningState relies upon them.
+        final Set<ProjectVersionRef> restParam = new LinkedHashSet<ProjectVersionRef>();
+        if ( projects != null )
         {
-            restParam.add( p.asProjectVersionRef() );
+            for ( final Project project : projects )
+            {
+                restParam.add( project.getKey() );
+            }
         }
 
-        logger.debug ("Calling REST client api with {} ", restParam);
-        final Map<ProjectVersionRef, String> result = restEndpoint.translateVersions( restParam );
+        int excluded = 0;
+        int duplicates = 0;
+        for ( final ArtifactRef p : localDeps )
+        {
+            if ( isExcluded( p.getGroupId(), p.getArtifactId() ) )
+            {
+                excluded++;
+            }
+            else if ( !restParam.add( p.asProjectVersionRef() ) )
+            {
+                duplicates++;
+            }
+        }
+
+        logger.info( "Requesting {} GAVs from the REST service; pruned {} reactor and {} excluded GAVs, merged {} "
+                                     + "duplicates.", restParam.size(), pruned, excluded, duplicates );
+
+        // Flush the last, partial, batch queued while reading so that every GAV marked as requested has been sent.
+        if ( prefetchExecutor != null && !prefetchPending.isEmpty() )
+        {
+            submitPrefetch( prefetchPending );
+            prefetchPending = new ArrayList<ProjectVersionRef>();
+        }
+
+        if ( prefetchExecutor == null )
+        {
+            logger.debug ("Calling REST client api with {} ", restParam);
+            final Map<ProjectVersionRef, String> result =
+                restEndpoint.translateVersions( new ArrayList<ProjectVersionRef>( restParam ) );
+            logger.debug ("REST Client returned {} ", result);
+
+            return result;
+        }
+
+        // Send the remainder through the prefetch executor as well so that the translator is never called
+        // concurrently, then join every request.
+        final List<ProjectVersionRef> remaining = new ArrayList<ProjectVersionRef>();
+        for ( final ProjectVersionRef p : restParam )
+        {
+            if ( !prefetchRequested.contains( p ) )
+            {
+                remaining.add( p );
+            }
+        }
+        logger.info( "{} GAVs were requested while reading the POMs; requesting the remaining {}.",
+                     restParam.size() - remaining.size(), remaining.size() );
+
+        if ( !remaining.isEmpty() )
+        {
+            submitPrefetch( remaining );
+        }
+
+        final Map<ProjectVersionRef, String> result = new HashMap<ProjectVersionRef, String>();
+        try
+        {
+            for ( final Future<Map<ProjectVersionRef, String>> future : prefetched )
+            {
+                // Prefetching sends every literal GAV read, so only keep those the scan actually asked for.
+                for ( final Map.Entry<ProjectVersionRef, String> entry : future.get().entrySet() )
+                {
+                    if ( restParam.contains( entry.getKey() ) )
+                    {
+                        result.put( entry.getKey(), entry.getValue() );
+                    }
+                }
+            }
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ManipulationException( "Interrupted while waiting for the REST service", e );
+        }
+        catch ( final ExecutionException e )
+        {
+            if ( e.getCause() instanceof RestException )
+            {
+                throw (RestException) e.getCause();
+            }
+            throw new ManipulationException( "REST translation failed: %s", e.getCause(), e.getCause().getMessage() );
+        }
+        finally
+        {
+            shutdownPrefetch();
+        }
         logger.debug ("REST Client returned {} ", result);
 
         return result;
@@ -211,14 +485,78 @@ public class DependencyRESTManipulator
     }
 
 
+    private boolean isExcluded( final String groupId, final String artifactId )
+    {
+        return excluded.containsKey( groupId, artifactId );
+    }
+
+    private void queuePrefetch( final Iterable<Dependency> dependencies )
+    {
+        if ( dependencies == null )
+        {
+            return;
+        }
+
+        for ( final Dependency d : dependencies )
+        {
+            if ( d.getVersion() != null && VersionExpression.parse( d.getVersion() ).isLiteral()
+                && !isExcluded( d.getGroupId(), d.getArtifactId() ) )
+            {
+                queuePrefetch( new ProjectVersionRef( d.getGroupId(), d.getArtifactId(), d.getVersion() ) );
+            }
+        }
+    }
+
+    private void queuePrefetch( final ProjectVersionRef gav )
+    {
+        if ( prefetchRequested.add( gav ) )
+        {
+            prefetchPending.add( gav );
+        }
+    }
+
+    /**
+     * Requests are sent one batch at a time by a single background thread; each batch is still split into concurrent
+     * chunks by the translator.
+     */
+    private void submitPrefetch( final List<ProjectVersionRef> batch )
+    {
+        if ( prefetchExecutor == null )
+        {
+            prefetchExecutor = Executors.newSingleThreadExecutor( new NamedThreadFactory( "rest-prefetch" ) );
+        }
+
+        logger.debug( "Requesting translation of {} GAVs in the background", batch.size() );
+        prefetched.add( prefetchExecutor.submit( new Callable<Map<ProjectVersionRef, String>>()
+        {
+            @Override
+            public Map<ProjectVersionRef, String> call()
+            {
+                return restEndpoint.translateVersions( batch );
+            }
+        } ) );
+    }
+
+    private void shutdownPrefetch()
+    {
+        if ( prefetchExecutor != null )
+        {
+            prefetchExecutor.shutdownNow();
+            prefetchExecutor = null;
+        }
+        prefetched.clear();
+    }
+
     /**
      * Translate a given set of dependencies into ProjectVersionRefs.
      *
-     * @param projects
+     * @param properties the properties of the projects.
+     * @param reactorGAs the GAs of the projects, used to skip inter-module dependencies.
      * @param deps Set of ProjectVersionRef to store the results in.
      * @param dependencies dependencies to examine
      */
-    private void recordDependencies( List<Project> projects, Set<ArtifactRef> deps, Iterable<Dependency> dependencies )
+    private void recordDependencies( PropertyIndex properties, Set<String> reactorGAs, Set<ArtifactRef> deps,
+                                     Iterable<Dependency> dependencies )
                     throws ManipulationException
     {
         if ( dependencies == null )
@@ -236,51 +574,32 @@ public class DependencyRESTManipulator
             {
                 logger.debug( "Skipping dependency " + d + " as empty version." );
             }
+            else if ( "${project.version}".equals( d.getVersion() ) && reactorGAs.contains( ga( d.getGroupId(),
+                                                                                              d.getArtifactId() ) ) )
+            {
+                logger.debug( "Skipping dependency " + d + " as it is a reactor module." );
+                pruned++;
+            }
             else
             {
                 deps.add( new ArtifactRef( new ProjectVersionRef( d.getGroupId(), d.getArtifactId(),
-                                                                  resolveProperties ( projects, d.getVersion())),
+                                                                  resolveProperties ( properties, d.getVersion())),
                                            new TypeAndClassifier( d.getType(), d.getClassifier() ), Boolean.parseBoolean( d.getOptional())));
             }
         }
     }
 
     /**
-     * This recursively checks the supplied version and recursively resolves it if its a property.
+     * This checks the supplied version and resolves any properties it refers to, following any chain of references.
      *
-     * @param projects set of projects
+     * @param properties the properties of the projects
      * @param version version to check
      * @return the version string
-     * @throws ManipulationException
+     * @throws ManipulationException if a chain of references is cyclic.
      */
-    private String resolveProperties( List<Project> projects, String version )
+    private String resolveProperties( PropertyIndex properties, String version )
                     throws ManipulationException
     {
-        String result = version;
-
-        if (version.startsWith( "${" ) )
-        {
-            final int endIndex = version.indexOf( '}' );
-            final String property = version.substring( 2, endIndex );
-
-            if ( endIndex != version.length() - 1 )
-            {
-                throw new ManipulationException( "NYI : handling for versions (" + version
-                                                                 + ") with multiple embedded properties is NYI. " );
-            }
-            for ( Project p : projects)
-            {
-                if ( p.getModel().getProperties().containsKey (property) )
-                {
-                    result = p.getModel().getProperties().getProperty( property );
-
-                    if ( result.startsWith( "${" ))
-                    {
-                        result = resolveProperties( projects, result );
-                    }
-                }
-            }
-        }
-        return result;
+        return properties.resolve( VersionExpression.parse( version ) );
     }
 }
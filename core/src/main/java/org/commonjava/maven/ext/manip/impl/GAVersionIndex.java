@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.impl;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable index of version overrides keyed by <code>groupId:artifactId</code>, which is probed with a dependency's
+ * groupId and artifactId as they are rather than by building the combined key, so that looking up every dependency
+ * of every module allocates nothing.
+ * <p>
+ * The index is a two-level open-addressing hash table: the first level maps the groupId to a table of the artifactIds
+ * overridden in that group, which maps the artifactId to the number of the entry. Both use linear probing and are at
+ * most half full. The keys are interned, so a probe with the (typically interned) strings of a parsed model usually
+ * matches by identity. Entries are numbered in insertion order, so callers can record which entries they matched in
+ * a {@link BitSet}.
+ * </p>
+ */
+final class GAVersionIndex
+{
+    private final String[] keys;
+
+    private final String[] versions;
+
+    private final String[] groupIds;
+
+    private final ArtifactTable[] groupArtifacts;
+
+    private final int size;
+
+    /**
+     * @param overrides version overrides keyed by <code>groupId:artifactId</code>. Keys without a colon can never
+     * match a dependency and are dropped.
+     */
+    GAVersionIndex( final Map<String, String> overrides )
+    {
+        keys = new String[overrides.size()];
+        versions = new String[overrides.size()];
+
+        final int capacity = capacity( overrides.size() );
+        groupIds = new String[capacity];
+        groupArtifacts = new ArtifactTable[capacity];
+
+        int entry = 0;
+        for ( final Map.Entry<String, String> override : overrides.entrySet() )
+        {
+            final String key = override.getKey();
+            final int colon = key.indexOf( ':' );
+            if ( colon < 0 )
+            {
+                continue;
+            }
+
+            final String groupId = key.substring( 0, colon ).intern();
+            int slot = slot( groupId.hashCode(), capacity );
+            while ( groupIds[slot] != null && !groupIds[slot].equals( groupId ) )
+            {
+                slot = ( slot + 1 ) & ( capacity - 1 );
+            }
+            if ( groupIds[slot] == null )
+            {
+                groupIds[slot] = groupId;
+                groupArtifacts[slot] = new ArtifactTable();
+            }
+            groupArtifacts[slot].add( key.substring( colon + 1 ).intern(), entry );
+
+            keys[entry] = key;
+            versions[entry] = override.getValue();
+            entry++;
+        }
+        size = entry;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the number of the entry for the artifact, or -1 if it is not overridden.
+     */
+    int indexOf( final String groupId, final String artifactId )
+    {
+        if ( groupId == null || artifactId == null )
+        {
+            return -1;
+        }
+
+        final int capacity = groupIds.length;
+        int slot = slot( groupId.hashCode(), capacity );
+        String candidate;
+        while ( ( candidate = groupIds[slot] ) != null )
+        {
+            if ( candidate == groupId || candidate.equals( groupId ) )
+            {
+                return groupArtifacts[slot].indexOf( artifactId );
+            }
+            slot = ( slot + 1 ) & ( capacity - 1 );
+        }
+        return -1;
+    }
+
+    /**
+     * @return the override for the artifact, or null if it is not overridden.
+     */
+    String get( final String groupId, final String artifactId )
+    {
+        final int entry = indexOf( groupId, artifactId );
+        return entry < 0 ? null : versions[entry];
+    }
+
+    /**
+     * @return the <code>groupId:artifactId</code> key of the entry.
+     */
+    String getKey( final int entry )
+    {
+        return keys[entry];
+    }
+
+    String getVersion( final int entry )
+    {
+        return versions[entry];
+    }
+
+    /**
+     * @param entries the entries to select.
+     * @param selected whether to return the selected entries or the others.
+     * @return the selected (or the other) overrides keyed by <code>groupId:artifactId</code>, in insertion order.
+     */
+    Map<String, String> toMap( final BitSet entries, final boolean selected )
+    {
+        final Map<String, String> result = new LinkedHashMap<String, String>();
+        for ( int entry = 0; entry < size; entry++ )
+        {
+            if ( entries.get( entry ) == selected )
+            {
+                result.put( keys[entry], versions[entry] );
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toMap( new BitSet(), false ).toString();
+    }
+
+    private static int capacity( final int entries )
+    {
+        int capacity = 2;
+        while ( capacity < entries * 2 )
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int slot( final int hash, final int capacity )
+    {
+        // Spread the higher bits, as String hashes of similar keys differ mostly in the low bits.
+        return ( hash ^ ( hash >>> 16 ) ) & ( capacity - 1 );
+    }
+
+    /**
+     * The artifactIds overridden within one group.
+     */
+    private static final class ArtifactTable
+    {
+        private String[] artifactIds = new String[2];
+
+        private int[] entries = new int[2];
+
+        private int count;
+
+        void add( final String artifactId, final int entry )
+        {
+            if ( ( count + 1 ) * 2 > artifactIds.length )
+            {
+                resize();
+            }
+
+            int slot = insertionSlot( artifactIds, artifactId );
+            if ( artifactIds[slot] == null )
+            {
+                artifactIds[slot] = artifactId;
+                count++;
+            }
+            entries[slot] = entry;
+        }
+
+        int indexOf( final String artifactId )
+        {
+            final int capacity = artifactIds.length;
+            int slot = slot( artifactId.hashCode(), capacity );
+            String candidate;
+            while ( ( candidate = artifactIds[slot] ) != null )
+            {
+                if ( candidate == artifactId || candidate.equals( artifactId ) )
+                {
+                    return entries[slot];
+                }
+                slot = ( slot + 1 ) & ( capacity - 1 );
+            }
+            return -1;
+        }
+
+        private void resize()
+        {
+            final String[] oldArtifactIds = artifactIds;
+            final int[] oldEntries = entries;
+            artifactIds = new String[oldArtifactIds.length * 2];
+            entries = new int[oldArtifactIds.length * 2];
+
+            for ( int i = 0; i < oldArtifactIds.length; i++ )
+            {
+                if ( oldArtifactIds[i] != null )
+                {
+                    final int slot = insertionSlot( artifactIds, oldArtifactIds[i] );
+                    artifactIds[slot] = oldArtifactIds[i];
+                    entries[slot] = oldEntries[i];
+                }
+            }
+        }
+
+        private static int insertionSlot( final String[] table, final String artifactId )
+        {
+            int slot = slot( artifactId.hashCode(), table.length );
+            while ( table[slot] != null && !table[slot].equals( artifactId ) )
+            {
+                slot = ( slot + 1 ) & ( table.length - 1 );
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.impl;
+
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.ext.manip.model.Project;
+import org.commonjava.maven.ext.manip.util.GAMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.commons.lang.StringUtils.join;
+import static org.commonjava.maven.ext.manip.util.IdUtils.ga;
+
+/**
+ * The dependency version overrides for each module of a reactor, built once from the remote overrides and the
+ * <code>dependencyExclusion.*</code> properties. The exclusion keys are split up front into
+ * <ul>
+ *   <li><code>groupId:artifactId@*</code> wildcard keys, which apply to every module;</li>
+ *   <li><code>groupId:artifactId@groupId:artifactId</code> keys, grouped by the module they apply to;</li>
+ *   <li>plain <code>groupId:artifactId</code> keys, which are merged with the remote overrides.</li>
+ * </ul>
+ * Modules without module-specific keys share one precomputed result; for the others only their own keys are applied.
+ * The version overrides are held in a {@link GAVersionIndex}, the keys in {@link GAMatcher}s, so their groupId and
+ * artifactId may be patterns such as <code>org.jboss.*:*</code> or <code>*:jackson-*</code>.
+ * A module-specific key takes precedence over a wildcard key for the same artifact. An override with an empty value
+ * disables the remote override for the artifacts it matches, e.g. for the whole group with <code>groupId:*@*</code>;
+ * one with a value forces the artifacts it matches to that version, ignoring any property reference.
+ */
+final class ModuleOverrideIndex
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    /**
+     * Overrides which apply to every module, keyed by <code>groupId:artifactId</code>, with the reactor's GAs removed.
+     */
+    private final Map<String, String> versions;
+
+    private final GAVersionIndex versionIndex;
+
+    private final List<Exclusion> wildcards = new ArrayList<Exclusion>();
+
+    /**
+     * Versions forced by wildcard keys.
+     */
+    private final GAMatcher wildcardExplicit = new GAMatcher();
+
+    private final Map<String, List<Exclusion>> moduleSpecific = new HashMap<String, List<Exclusion>>();
+
+    private final Overrides common;
+
+    /**
+     * @param overrides the remote overrides.
+     * @param exclusions the <code>dependencyExclusion.*</code> properties, without the prefix.
+     * @param reactor the projects whose GAs are never overridden.
+     * @throws ManipulationException if an exclusion key is malformed.
+     */
+    ModuleOverrideIndex( final Map<ArtifactRef, String> overrides, final Map<String, String> exclusions,
+                         final Collection<Project> reactor )
+        throws ManipulationException
+    {
+        final Map<String, String> merged = new LinkedHashMap<String, String>();
+        for ( final Map.Entry<ArtifactRef, String> entry : overrides.entrySet() )
+        {
+            merged.put( entry.getKey().asProjectRef().toString(), entry.getValue() );
+        }
+        merged.putAll( exclusions );
+        for ( final Project project : reactor )
+        {
+            merged.remove( ga( project.getModel() ) );
+        }
+
+        logger.debug( "Calculating module-specific version overrides. Starting with:\n  {}",
+                      join( merged.entrySet(), "\n  " ) );
+
+        final Map<String, String> global = new LinkedHashMap<String, String>();
+        for ( final Map.Entry<String, String> entry : merged.entrySet() )
+        {
+            final String key = entry.getKey();
+            if ( !key.contains( "@" ) )
+            {
+                global.put( key, entry.getValue() );
+            }
+            else if ( key.endsWith( "@*" ) )
+            {
+                final String artifactGA = key.substring( 0, key.length() - 2 );
+                final Exclusion exclusion = new Exclusion( artifactGA, ProjectRef.parse( artifactGA ), entry.getValue() );
+                wildcards.add( exclusion );
+                if ( exclusion.isForced() )
+                {
+                    wildcardExplicit.put( exclusion.artifact, exclusion.value );
+                }
+            }
+            else
+            {
+                final String[] artifactAndModule = key.split( "@" );
+                if ( artifactAndModule.length != 2 )
+                {
+                    throw new ManipulationException( "Invalid format for exclusion key " + key );
+                }
+
+                List<Exclusion> forModule = moduleSpecific.get( artifactAndModule[1] );
+                if ( forModule == null )
+                {
+                    forModule = new ArrayList<Exclusion>( 1 );
+                    moduleSpecific.put( artifactAndModule[1], forModule );
+                }
+                // Only parsed once a module it applies to is found.
+                forModule.add( new Exclusion( artifactAndModule[0], null, entry.getValue() ) );
+            }
+        }
+        versions = Collections.unmodifiableMap( global );
+        versionIndex = new GAVersionIndex( versions );
+
+        common = build( "*", Collections.<Exclusion>emptyList() );
+    }
+
+    /**
+     * @param projectGA the <code>groupId:artifactId</code> of the module.
+     * @return the overrides which apply to the module. The result must not be modified.
+     */
+    Overrides forModule( final String projectGA )
+    {
+        final List<Exclusion> forModule = moduleSpecific.get( projectGA );
+        return forModule == null ? common : build( projectGA, forModule );
+    }
+
+    private Overrides build( final String projectGA, final List<Exclusion> forModule )
+    {
+        GAMatcher moduleExplicit = null;
+        final GAMatcher removed = new GAMatcher();
+
+        for ( final Exclusion exclusion : forModule )
+        {
+            final ProjectRef artifact = ProjectRef.parse( exclusion.artifactGA );
+            if ( exclusion.isForced() )
+            {
+                if ( moduleExplicit == null )
+                {
+                    moduleExplicit = new GAMatcher();
+                }
+                moduleExplicit.put( artifact, exclusion.value );
+                logger.debug( "Overriding module dependency for {} with {} : {}", projectGA, exclusion.artifactGA,
+                              exclusion.value );
+            }
+            else
+            {
+                // An empty value disables the override from the BOM.
+                removed.put( artifact, "" );
+                logger.debug( "Ignoring module dependency override for {} : {}", projectGA, exclusion.artifactGA );
+            }
+        }
+
+        final Overrides result = new Overrides( versionIndex, moduleExplicit, wildcardExplicit );
+        for ( final Exclusion exclusion : wildcards )
+        {
+            if ( exclusion.isForced() )
+            {
+                continue;
+            }
+
+            final String groupId = exclusion.artifact.getGroupId();
+            final String artifactId = exclusion.artifact.getArtifactId();
+            if ( result.getExplicitOverride( groupId, artifactId ) != null )
+            {
+                logger.debug( "For artifact override: {}, current overrides already contain a module-specific version. Skip.",
+                              exclusion.artifactGA );
+            }
+            else
+            {
+                removed.put( exclusion.artifact, "" );
+                logger.debug( "Removing {} from overrides", exclusion.artifactGA );
+            }
+        }
+
+        if ( removed.isEmpty() )
+        {
+            return result;
+        }
+
+        final Map<String, String> remaining = new LinkedHashMap<String, String>();
+        for ( final Map.Entry<String, String> entry : versions.entrySet() )
+        {
+            final String key = entry.getKey();
+            final int colon = key.indexOf( ':' );
+            if ( colon < 0 || !removed.containsKey( key.substring( 0, colon ), key.substring( colon + 1 ) ) )
+            {
+                remaining.put( key, entry.getValue() );
+            }
+        }
+        return new Overrides( new GAVersionIndex( remaining ), moduleExplicit, wildcardExplicit );
+    }
+
+    /**
+     * The overrides for one module.
+     */
+    static final class Overrides
+    {
+        /**
+         * Version overrides keyed by <code>groupId:artifactId</code>.
+         */
+        final GAVersionIndex versions;
+
+        private final GAMatcher moduleExplicit;
+
+        private final GAMatcher wildcardExplicit;
+
+        private Overrides( final GAVersionIndex versions, final GAMatcher moduleExplicit,
+                           final GAMatcher wildcardExplicit )
+        {
+            this.versions = versions;
+            this.moduleExplicit = moduleExplicit;
+            this.wildcardExplicit = wildcardExplicit;
+        }
+
+        /**
+         * @return the version forced by a <code>dependencyExclusion.*</code> property, which replaces any property
+         * reference, or null if there is none. Module-specific keys take precedence over wildcard keys.
+         */
+        String getExplicitOverride( final String groupId, final String artifactId )
+        {
+            final String result = moduleExplicit == null ? null : moduleExplicit.get( groupId, artifactId );
+            return result != null ? result : wildcardExplicit.get( groupId, artifactId );
+        }
+    }
+
+    private static final class Exclusion
+    {
+        private final String artifactGA;
+
+        private final ProjectRef artifact;
+
+        private final String value;
+
+        private Exclusion( final String artifactGA, final ProjectRef artifact, final String value )
+        {
+            this.artifactGA = artifactGA;
+            this.artifact = artifact;
+            this.value = value;
+        }
+
+        private boolean isForced()
+        {
+            return value != null && value.length() > 0;
+        }
+    }
+}
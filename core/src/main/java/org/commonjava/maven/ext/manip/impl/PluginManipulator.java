@@ -143,13 +143,14 @@ public class PluginManipulator
             return overrides;
         }
 
-        final ListIterator<ProjectVersionRef> iter = gavs.listIterator( gavs.size() );
+        final List<Map<ProjectRef, Plugin>> boms =
+            effectiveModelBuilder.getRemotePluginVersionOverrides( gavs, session.getRemoteThreads() );
+
+        final ListIterator<Map<ProjectRef, Plugin>> iter = boms.listIterator( boms.size() );
         // Iterate in reverse order so that the first GAV in the list overwrites the last
         while ( iter.hasPrevious() )
         {
-            final ProjectVersionRef ref = iter.previous();
-
-            overrides.putAll( effectiveModelBuilder.getRemotePluginVersionOverrides( ref ) );
+            overrides.putAll( iter.previous() );
         }
 
         return overrides;
@@ -112,6 +112,9 @@ public class ProjectVersioningManipulator
     {
         final Properties userProps = session.getUserProperties();
         session.setState( new VersioningState( userProps ) );
+
+        // Don't apply the versions calculated by a previous run if this one skips the scan.
+        versionsByGAV = null;
     }
 
     /**
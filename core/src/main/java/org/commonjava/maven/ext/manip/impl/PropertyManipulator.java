@@ -139,11 +139,13 @@ public class PropertyManipulator
         }
 
         // Iterate in reverse order so that the first GAV in the list overwrites the last
-        final ListIterator<ProjectVersionRef> listIterator = remoteMgmt.listIterator( remoteMgmt.size() );
+        final List<Properties> poms =
+            effectiveModelBuilder.getRemotePropertyMappingOverrides( remoteMgmt, session.getRemoteThreads() );
+
+        final ListIterator<Properties> listIterator = poms.listIterator( poms.size() );
         while ( listIterator.hasPrevious() )
         {
-            final ProjectVersionRef ref = listIterator.previous();
-            overrides.putAll( effectiveModelBuilder.getRemotePropertyMappingOverrides( ref ) );
+            overrides.putAll( listIterator.previous() );
         }
 
         return overrides;
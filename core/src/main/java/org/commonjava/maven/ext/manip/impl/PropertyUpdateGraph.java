@@ -0,0 +1,356 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.impl;
+
+import static org.apache.commons.lang.StringUtils.join;
+import static org.commonjava.maven.ext.manip.util.IdUtils.ga;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.ext.manip.model.Project;
+import org.commonjava.maven.ext.manip.state.CommonDependencyState;
+import org.commonjava.maven.ext.manip.util.PropertyIndex;
+import org.commonjava.maven.ext.manip.util.VersionExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The properties of a reactor and the <code>${...}</code> chains between them, built once so that all pending
+ * property updates can be applied in a single pass.
+ * <p>
+ * Each property maps to its definitions, one per module defining it. A definition whose value is a single reference
+ * to another property is an edge of the graph: updating the property updates the property it refers to instead, in
+ * every module defining that one. Any other definition is rewritten with the new value; a value combining several
+ * properties is replaced outright.
+ * </p>
+ * The properties reachable from the pending updates are ordered topologically, failing on a cyclic chain, and each is
+ * visited once, passing the updates which reach it on along its edges. Where several updates reach the same property
+ * the last of them, in the order given, is written.
+ */
+final class PropertyUpdateGraph
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Map<String, List<Definition>> definitions = new HashMap<String, List<Definition>>();
+
+    private final PropertyIndex properties;
+
+    /**
+     * @param projects the projects whose properties may be updated, in reactor order.
+     */
+    PropertyUpdateGraph( final Collection<Project> projects )
+    {
+        // The last definition of a property, in reactor order, is its value for resolving references.
+        final Map<String, String> values = new HashMap<String, String>();
+        for ( final Project project : projects )
+        {
+            final Properties projectProperties = project.getModel().getProperties();
+            for ( final String name : projectProperties.stringPropertyNames() )
+            {
+                final String value = projectProperties.getProperty( name );
+                List<Definition> forName = definitions.get( name );
+                if ( forName == null )
+                {
+                    forName = new ArrayList<Definition>( 1 );
+                    definitions.put( name, forName );
+                }
+                forName.add( new Definition( project, name, value ) );
+                values.put( name, value );
+            }
+        }
+        properties = new PropertyIndex( values );
+    }
+
+    /**
+     * @param state the dependency state, for the strict alignment settings.
+     * @param updates the new values keyed by property, in order of increasing precedence.
+     * @return the properties rewritten and the updates which could not be applied.
+     * @throws ManipulationException if an update follows a cyclic chain, or violates strict alignment when that fails
+     * the build.
+     */
+    Result apply( final CommonDependencyState state, final Map<String, String> updates )
+        throws ManipulationException
+    {
+        final List<String> order = sort( updates.keySet() );
+
+        // Where several updates reach a property, the one given last wins.
+        final Map<String, Integer> precedence = new HashMap<String, Integer>();
+
+        // The updates reaching each property.
+        final Map<String, Map<String, String>> reaching = new HashMap<String, Map<String, String>>();
+        for ( final Map.Entry<String, String> update : updates.entrySet() )
+        {
+            precedence.put( update.getKey(), precedence.size() );
+
+            final Map<String, String> own = new HashMap<String, String>( 2 );
+            own.put( update.getKey(), update.getValue() );
+            reaching.put( update.getKey(), own );
+        }
+
+        final Result result = new Result();
+        final Set<String> unresolved = new HashSet<String>();
+        for ( final String name : order )
+        {
+            final Map<String, String> incoming = reaching.get( name );
+            final List<Definition> forName = definitions.get( name );
+            if ( forName == null )
+            {
+                // Nothing defines the property, so the updates reaching it cannot be applied here.
+                unresolved.addAll( incoming.keySet() );
+                if ( !updates.containsKey( name ) )
+                {
+                    logger.error( "Recursive property {} not found while updating {}", name, incoming.keySet() );
+                }
+                continue;
+            }
+
+            for ( final Definition definition : forName )
+            {
+                if ( definition.expression.isReference() )
+                {
+                    final String target = definition.expression.getProperty();
+                    Map<String, String> forTarget = reaching.get( target );
+                    if ( forTarget == null )
+                    {
+                        forTarget = new HashMap<String, String>( 2 );
+                        reaching.put( target, forTarget );
+                    }
+                    forTarget.putAll( incoming );
+                }
+                else
+                {
+                    rewrite( state, definition, incoming, precedence, result );
+                }
+            }
+        }
+
+        for ( final String key : updates.keySet() )
+        {
+            if ( unresolved.contains( key ) )
+            {
+                result.unresolved.add( key );
+            }
+        }
+
+        if ( !result.rewrites.isEmpty() )
+        {
+            logger.info( "Updated properties:\n  {}", join( result.rewrites, "\n  " ) );
+        }
+        return result;
+    }
+
+    private void rewrite( final CommonDependencyState state, final Definition definition,
+                          final Map<String, String> incoming, final Map<String, Integer> precedence,
+                          final Result result )
+        throws ManipulationException
+    {
+        // A value combining several properties is replaced outright, so compare with what it resolves to.
+        String resolvedValue = definition.value;
+        if ( state.getStrict() )
+        {
+            try
+            {
+                resolvedValue = properties.resolve( definition.expression );
+            }
+            catch ( final ManipulationException e )
+            {
+                // A cyclic chain cannot be resolved; Maven would reject it too, so judge the literal value instead.
+                logger.debug( "Comparing the literal value of property {}: {}", definition.name, e.getMessage() );
+            }
+        }
+
+        String origin = null;
+        String newValue = null;
+        int best = -1;
+        for ( final Map.Entry<String, String> update : incoming.entrySet() )
+        {
+            final String overrideVersion = update.getValue();
+
+            if ( state.getStrict() )
+            {
+                if ( !overrideVersion.startsWith( resolvedValue ) )
+                {
+                    if ( state.getFailOnStrictViolation() )
+                    {
+                        throw new ManipulationException(
+                                        "Replacement: {} of original version: {} in property: {} violates the strict version-alignment rule!",
+                                        overrideVersion, definition.value, definition.name );
+                    }
+                    else
+                    {
+                        logger.warn( "Replacement: {} of original version: {} in property: {} violates the strict version-alignment rule!",
+                                     overrideVersion, definition.value, definition.name );
+                        // Ignore the dependency override. The property counts as found so it won't inject a new
+                        // property either.
+                        continue;
+                    }
+                }
+            }
+
+            final int rank = precedence.get( update.getKey() );
+            if ( rank > best )
+            {
+                best = rank;
+                origin = update.getKey();
+                newValue = overrideVersion;
+            }
+        }
+
+        if ( newValue != null )
+        {
+            definition.project.getModel().getProperties().setProperty( definition.name, newValue );
+            result.rewrites.add( new Rewrite( definition.project, definition.name, definition.value, newValue,
+                                              origin ) );
+        }
+    }
+
+    /**
+     * @return the properties reachable from the given ones, each before the properties it refers to.
+     * @throws ManipulationException if a chain is cyclic.
+     */
+    private List<String> sort( final Collection<String> roots )
+        throws ManipulationException
+    {
+        final List<String> postOrder = new ArrayList<String>();
+        final Set<String> visited = new HashSet<String>();
+        for ( final String root : roots )
+        {
+            visit( root, root, new LinkedHashSet<String>(), visited, postOrder );
+        }
+        Collections.reverse( postOrder );
+        return postOrder;
+    }
+
+    private void visit( final String root, final String name, final Set<String> path, final Set<String> visited,
+                        final List<String> postOrder )
+        throws ManipulationException
+    {
+        if ( !path.add( name ) )
+        {
+            throw new ManipulationException( "Cyclic property reference while updating {}: {}", root,
+                                             join( path, " -> " ) + " -> " + name );
+        }
+
+        if ( visited.add( name ) )
+        {
+            final List<Definition> forName = definitions.get( name );
+            if ( forName != null )
+            {
+                for ( final Definition definition : forName )
+                {
+                    if ( definition.expression.isReference() )
+                    {
+                        visit( root, definition.expression.getProperty(), path, visited, postOrder );
+                    }
+                }
+            }
+            postOrder.add( name );
+        }
+        path.remove( name );
+    }
+
+    /**
+     * The outcome of applying the pending updates.
+     */
+    static final class Result
+    {
+        private final List<Rewrite> rewrites = new ArrayList<Rewrite>();
+
+        private final Set<String> unresolved = new LinkedHashSet<String>();
+
+        /**
+         * @return the property definitions rewritten, in the order they were rewritten.
+         */
+        List<Rewrite> getRewrites()
+        {
+            return rewrites;
+        }
+
+        /**
+         * @return the updates for which no property was found to rewrite, either because nothing defines the property
+         * or because a chain of references from it ends at an undefined property.
+         */
+        Set<String> getUnresolved()
+        {
+            return unresolved;
+        }
+    }
+
+    /**
+     * A property rewritten in one module.
+     */
+    static final class Rewrite
+    {
+        final Project project;
+
+        final String property;
+
+        final String oldValue;
+
+        final String newValue;
+
+        /**
+         * The pending update which led to the rewrite; differs from the property if it was reached through a chain.
+         */
+        final String origin;
+
+        private Rewrite( final Project project, final String property, final String oldValue, final String newValue,
+                         final String origin )
+        {
+            this.project = project;
+            this.property = property;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+            this.origin = origin;
+        }
+
+        @Override
+        public String toString()
+        {
+            return ga( project ) + ": " + property + " " + oldValue + " -> " + newValue
+                + ( origin.equals( property ) ? "" : " (via " + origin + ")" );
+        }
+    }
+
+    private static final class Definition
+    {
+        private final Project project;
+
+        private final String name;
+
+        private final String value;
+
+        private final VersionExpression expression;
+
+        private Definition( final Project project, final String name, final String value )
+        {
+            this.project = project;
+            this.name = name;
+            this.value = value;
+            this.expression = VersionExpression.parse( value );
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package org.commonjava.maven.ext.manip.state;
 
 import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.ext.manip.ManipulationException;
 import org.commonjava.maven.ext.manip.impl.DependencyManipulator;
 
 import java.util.HashMap;
@@ -33,29 +34,153 @@ public class DependencyRESTState extends CommonDependencyState
      */
     public static final String REST_URL = "restEndpoint";
 
+    /**
+     * The name of the property which sets the maximum number of GAVs sent in one REST request.
+     */
+    public static final String REST_CHUNK_SIZE = "restChunkSize";
+
+    /**
+     * The name of the property which sets the maximum number of concurrent REST requests.
+     */
+    public static final String REST_CONCURRENCY = "restConcurrency";
+
+    /**
+     * The name of the property which sets how many seconds REST translations are cached on disk. Zero (the default)
+     * disables the cache.
+     */
+    public static final String REST_CACHE_TTL = "restCacheTTL";
+
+    /**
+     * The name of the property which sets the REST translation cache directory. Defaults to ~/.pme/rest-cache so that
+     * separate builds share it.
+     */
+    public static final String REST_CACHE_DIR = "restCacheDir";
+
+    /**
+     * The name of the property which sets the REST connect timeout in milliseconds.
+     */
+    public static final String REST_CONNECT_TIMEOUT = "restConnectTimeout";
+
+    /**
+     * The name of the property which sets the REST read timeout in milliseconds.
+     */
+    public static final String REST_READ_TIMEOUT = "restReadTimeout";
+
+    /**
+     * The name of the property which sets how many times a failed REST request is retried.
+     */
+    public static final String REST_RETRIES = "restRetries";
+
+    /**
+     * The name of the property which sets the delay in milliseconds before the first retry of a REST request.
+     */
+    public static final String REST_RETRY_DELAY = "restRetryDelay";
+
+    /**
+     * The name of the property which sets after how many consecutive failed REST requests no more are sent. Zero
+     * disables the circuit breaker.
+     */
+    public static final String REST_CIRCUIT_BREAKER_THRESHOLD = "restCircuitBreakerThreshold";
+
+    /**
+     * The name of the property which sets how many milliseconds to wait before contacting the REST service again
+     * once the circuit breaker has opened.
+     */
+    public static final String REST_CIRCUIT_BREAKER_RESET = "restCircuitBreakerReset";
+
+    /**
+     * The name of the property which, when true, gzips REST request bodies and accepts gzipped responses.
+     */
+    public static final String REST_GZIP = "restGzip";
+
+    /**
+     * The name of the property which, when true, sends REST requests with the GAVs grouped by groupId and
+     * artifactId rather than as one object per GAV.
+     */
+    public static final String REST_GROUPED_FORMAT = "restGroupedFormat";
+
+    /**
+     * The name of the property which, when true, starts translating GAVs while the POMs are still being read.
+     */
+    public static final String REST_PREFETCH = "restPrefetch";
+
+    /**
+     * The name of the property which selects how versions are translated: <code>rest</code> (the default) calls the
+     * REST service while <code>file</code> replays the mapping in {@link #REST_TRANSLATION_FILE}.
+     */
+    public static final String REST_TRANSLATOR = "restTranslator";
+
+    /**
+     * The name of the property which names the JSON or binary translation file used by the <code>file</code>
+     * translator.
+     */
+    public static final String REST_TRANSLATION_FILE = "restTranslationFile";
+
+    /**
+     * The name of the property which names a file to record the translations into, in the binary form the
+     * <code>file</code> translator reads.
+     */
+    public static final String REST_RECORD_FILE = "restRecordFile";
+
     private final String restURL;
 
+    private final String translator;
+
+    private final String translationFile;
+
     private final Map<ProjectVersionRef, String> projectVersionsByGAV = new HashMap<ProjectVersionRef, String>();
 
 
+    /**
+     * @throws ManipulationException if {@link #REST_TRANSLATOR} is neither <code>rest</code> nor <code>file</code>.
+     */
     public DependencyRESTState( final Properties userProps )
+        throws ManipulationException
     {
         super (userProps);
 
         restURL = userProps.getProperty( "restURL" );
+        translator = userProps.getProperty( REST_TRANSLATOR, "rest" );
+        translationFile = userProps.getProperty( REST_TRANSLATION_FILE );
+
+        if ( !"rest".equals( translator ) && !"file".equals( translator ) )
+        {
+            throw new ManipulationException( "Invalid value for {}: {}", REST_TRANSLATOR, translator );
+        }
     }
 
     /**
-     * Enabled ONLY if propertyManagement is provided in the user properties / CLI -D options.
+     * Enabled ONLY if restURL is provided in the user properties / CLI -D options, or a translation file when using
+     * the file translator.
      *
      * @see State#isEnabled()
      */
     @Override
     public boolean isEnabled()
     {
+        if ( isFileTranslator() )
+        {
+            return translationFile != null && translationFile.length() > 0;
+        }
         return restURL != null && restURL.length() > 0;
     }
 
+    /**
+     * @return true if versions are translated from a file rather than by the REST service.
+     */
+    public boolean isFileTranslator()
+    {
+        return "file".equals( translator );
+    }
+
+    /**
+     * @return the translation file used by the file translator.
+     */
+    public String getTranslationFile()
+    {
+        return translationFile;
+    }
+
     /**
      * @return value of REST URL.
      */
@@ -0,0 +1,423 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+
+/**
+ * Maps <code>groupId:artifactId</code> patterns to values. In a pattern <code>*</code> matches any sequence of
+ * characters, dots included, so <code>org.jboss.*:*</code> matches every artifact of every group below org.jboss and
+ * <code>*:jackson-*</code> matches the jackson- artifacts of any group.
+ * <p>
+ * Patterns are compiled into a trie over the dot-separated segments of the groupId: the literal leading segments of a
+ * pattern select a node and the remainder of the pattern, from the first segment containing a <code>*</code>, is held
+ * at that node to be matched against the rest of the groupId. Each groupId pattern holds its artifactId patterns.
+ * Lookups walk the trie without allocating.
+ * </p>
+ * When several patterns match an artifact the most specific one is used:
+ * <ol>
+ *   <li>The groupId is compared first. An exact groupId beats any pattern; of two patterns, the one with more literal
+ *   leading segments wins, then the one with more literal characters.</li>
+ *   <li>Within that groupId pattern an exact artifactId beats any pattern; of two patterns, the one with more literal
+ *   characters wins, so <code>*</code> comes last.</li>
+ *   <li>If none of the artifactId patterns of the best groupId pattern match, the next best groupId pattern is
+ *   tried.</li>
+ *   <li>Otherwise equal patterns are tried in the order they were added. Adding the same pattern again replaces its
+ *   value.</li>
+ * </ol>
+ */
+public final class GAMatcher
+{
+    private static final String WILDCARD = "*";
+
+    private final Node root = new Node();
+
+    private final Map<String, String> patterns = new LinkedHashMap<String, String>();
+
+    /**
+     * @param key the pattern, as a groupId and artifactId which may contain <code>*</code>.
+     * @param value the value for the pattern; must not be null.
+     */
+    public void put( final ProjectRef key, final String value )
+    {
+        put( key.getGroupId(), key.getArtifactId(), value );
+    }
+
+    /**
+     * @param groupPattern the groupId, which may contain <code>*</code>.
+     * @param artifactPattern the artifactId, which may contain <code>*</code>.
+     * @param value the value for the pattern; must not be null.
+     */
+    public void put( final String groupPattern, final String artifactPattern, final String value )
+    {
+        if ( value == null )
+        {
+            throw new IllegalArgumentException( "No value given for " + groupPattern + ':' + artifactPattern );
+        }
+
+        final int wildcard = groupPattern.indexOf( '*' );
+        Node node = root;
+        int start = 0;
+        Artifacts artifacts;
+        while ( true )
+        {
+            final int dot = groupPattern.indexOf( '.', start );
+            final int end = dot < 0 ? groupPattern.length() : dot;
+            if ( wildcard >= 0 && wildcard < end )
+            {
+                artifacts = node.tail( groupPattern.substring( start ) );
+                break;
+            }
+
+            node = node.child( groupPattern.substring( start, end ) );
+            if ( dot < 0 )
+            {
+                if ( node.exact == null )
+                {
+                    node.exact = new Artifacts();
+                }
+                artifacts = node.exact;
+                break;
+            }
+            start = dot + 1;
+        }
+
+        artifacts.put( artifactPattern, value );
+        patterns.put( groupPattern + ':' + artifactPattern, value );
+    }
+
+    /**
+     * @return the value of the most specific pattern matching the artifact, or null if none match.
+     */
+    public String get( final String groupId, final String artifactId )
+    {
+        if ( groupId == null || artifactId == null || patterns.isEmpty() )
+        {
+            return null;
+        }
+        return find( root, groupId, 0, artifactId );
+    }
+
+    public boolean containsKey( final String groupId, final String artifactId )
+    {
+        return get( groupId, artifactId ) != null;
+    }
+
+    public boolean isEmpty()
+    {
+        return patterns.isEmpty();
+    }
+
+    public int size()
+    {
+        return patterns.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "GAMatcher" + patterns;
+    }
+
+    /**
+     * @param from the offset of the unmatched remainder of the groupId, or -1 if every segment has been matched.
+     */
+    private static String find( final Node node, final String groupId, final int from, final String artifactId )
+    {
+        if ( from < 0 )
+        {
+            return node.exact == null ? null : node.exact.get( artifactId );
+        }
+
+        final int dot = groupId.indexOf( '.', from );
+        final int end = dot < 0 ? groupId.length() : dot;
+        final Node child = node.find( groupId, from, end );
+        if ( child != null )
+        {
+            final String result = find( child, groupId, dot < 0 ? -1 : dot + 1, artifactId );
+            if ( result != null )
+            {
+                return result;
+            }
+        }
+
+        for ( int i = 0; i < node.tailCount; i++ )
+        {
+            if ( matches( node.tailPatterns[i], groupId, from ) )
+            {
+                final String result = node.tails[i].get( artifactId );
+                if ( result != null )
+                {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the pattern matches the value from the given offset on.
+     */
+    static boolean matches( final String pattern, final String value, final int from )
+    {
+        int p = 0;
+        int v = from;
+        int starP = -1;
+        int starV = -1;
+        while ( v < value.length() )
+        {
+            if ( p < pattern.length() && pattern.charAt( p ) == '*' )
+            {
+                starP = p++;
+                starV = v;
+            }
+            else if ( p < pattern.length() && pattern.charAt( p ) == value.charAt( v ) )
+            {
+                p++;
+                v++;
+            }
+            else if ( starP >= 0 )
+            {
+                // Let the last * consume one more character and retry.
+                p = starP + 1;
+                v = ++starV;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        while ( p < pattern.length() && pattern.charAt( p ) == '*' )
+        {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    private static int literalLength( final String pattern )
+    {
+        int result = 0;
+        for ( int i = 0; i < pattern.length(); i++ )
+        {
+            if ( pattern.charAt( i ) != '*' )
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A groupId segment. Children are held in an open-addressing table so they can be found from a region of the
+     * groupId without extracting it.
+     */
+    private static final class Node
+    {
+        private String[] segments = new String[2];
+
+        private Node[] children = new Node[2];
+
+        private int childCount;
+
+        /**
+         * The artifactId patterns of groupIds ending at this node.
+         */
+        private Artifacts exact;
+
+        /**
+         * The remainders of the groupId patterns with a wildcard after this node, most specific first.
+         */
+        private String[] tailPatterns = new String[0];
+
+        private Artifacts[] tails = new Artifacts[0];
+
+        private int tailCount;
+
+        Node find( final String groupId, final int from, final int end )
+        {
+            int hash = 0;
+            for ( int i = from; i < end; i++ )
+            {
+                hash = 31 * hash + groupId.charAt( i );
+            }
+
+            final int length = end - from;
+            int slot = hash & ( segments.length - 1 );
+            String candidate;
+            while ( ( candidate = segments[slot] ) != null )
+            {
+                if ( candidate.length() == length && groupId.regionMatches( from, candidate, 0, length ) )
+                {
+                    return children[slot];
+                }
+                slot = ( slot + 1 ) & ( segments.length - 1 );
+            }
+            return null;
+        }
+
+        Node child( final String segment )
+        {
+            final Node existing = find( segment, 0, segment.length() );
+            if ( existing != null )
+            {
+                return existing;
+            }
+
+            if ( ( childCount + 1 ) * 2 > segments.length )
+            {
+                final String[] oldSegments = segments;
+                final Node[] oldChildren = children;
+                segments = new String[oldSegments.length * 2];
+                children = new Node[oldSegments.length * 2];
+                for ( int i = 0; i < oldSegments.length; i++ )
+                {
+                    if ( oldSegments[i] != null )
+                    {
+                        insert( oldSegments[i], oldChildren[i] );
+                    }
+                }
+            }
+
+            final Node child = new Node();
+            insert( segment, child );
+            childCount++;
+            return child;
+        }
+
+        private void insert( final String segment, final Node child )
+        {
+            int slot = segment.hashCode() & ( segments.length - 1 );
+            while ( segments[slot] != null )
+            {
+                slot = ( slot + 1 ) & ( segments.length - 1 );
+            }
+            segments[slot] = segment;
+            children[slot] = child;
+        }
+
+        Artifacts tail( final String pattern )
+        {
+            for ( int i = 0; i < tailCount; i++ )
+            {
+                if ( tailPatterns[i].equals( pattern ) )
+                {
+                    return tails[i];
+                }
+            }
+
+            if ( tailCount == tailPatterns.length )
+            {
+                final String[] newPatterns = new String[tailCount * 2 + 1];
+                final Artifacts[] newTails = new Artifacts[tailCount * 2 + 1];
+                System.arraycopy( tailPatterns, 0, newPatterns, 0, tailCount );
+                System.arraycopy( tails, 0, newTails, 0, tailCount );
+                tailPatterns = newPatterns;
+                tails = newTails;
+            }
+
+            // Keep the most specific first; equally specific patterns stay in the order they were added.
+            final int length = literalLength( pattern );
+            int position = tailCount;
+            while ( position > 0 && literalLength( tailPatterns[position - 1] ) < length )
+            {
+                tailPatterns[position] = tailPatterns[position - 1];
+                tails[position] = tails[position - 1];
+                position--;
+            }
+            tailPatterns[position] = pattern;
+            tails[position] = new Artifacts();
+            tailCount++;
+            return tails[position];
+        }
+    }
+
+    /**
+     * The artifactId patterns of one groupId pattern.
+     */
+    private static final class Artifacts
+    {
+        private final Map<String, String> exact = new HashMap<String, String>();
+
+        private String[] patterns = new String[0];
+
+        private String[] values = new String[0];
+
+        private int count;
+
+        void put( final String pattern, final String value )
+        {
+            if ( pattern.indexOf( '*' ) < 0 )
+            {
+                exact.put( pattern, value );
+                return;
+            }
+
+            for ( int i = 0; i < count; i++ )
+            {
+                if ( patterns[i].equals( pattern ) )
+                {
+                    values[i] = value;
+                    return;
+                }
+            }
+
+            if ( count == patterns.length )
+            {
+                final String[] newPatterns = new String[count * 2 + 1];
+                final String[] newValues = new String[count * 2 + 1];
+                System.arraycopy( patterns, 0, newPatterns, 0, count );
+                System.arraycopy( values, 0, newValues, 0, count );
+                patterns = newPatterns;
+                values = newValues;
+            }
+
+            // Keep the most specific first, so * comes last.
+            final int length = literalLength( pattern );
+            int position = count;
+            while ( position > 0 && literalLength( patterns[position - 1] ) < length )
+            {
+                patterns[position] = patterns[position - 1];
+                values[position] = values[position - 1];
+                position--;
+            }
+            patterns[position] = pattern;
+            values[position] = value;
+            count++;
+        }
+
+        String get( final String artifactId )
+        {
+            final String result = exact.isEmpty() ? null : exact.get( artifactId );
+            if ( result != null )
+            {
+                return result;
+            }
+
+            for ( int i = 0; i < count; i++ )
+            {
+                if ( WILDCARD.equals( patterns[i] ) || matches( patterns[i], artifactId, 0 ) )
+                {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.fixture;
+
+import java.io.File;
+
+import org.apache.maven.model.Model;
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.ext.manip.model.Project;
+
+public final class TestProjects
+{
+    private TestProjects()
+    {
+    }
+
+    /**
+     * @param artifactId the artifactId of the project, in groupId org.foo and version 1.0.
+     * @param properties the properties of the project, as alternating names and values.
+     */
+    public static Project project( final String artifactId, final String... properties )
+        throws ManipulationException
+    {
+        final Model model = new Model();
+        model.setGroupId( "org.foo" );
+        model.setArtifactId( artifactId );
+        model.setVersion( "1.0" );
+        for ( int i = 0; i < properties.length; i += 2 )
+        {
+            model.getProperties().setProperty( properties[i], properties[i + 1] );
+        }
+        return new Project( new File( artifactId, "pom.xml" ), model );
+    }
+}
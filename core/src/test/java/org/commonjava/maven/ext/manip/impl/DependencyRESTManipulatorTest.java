@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.impl;
+
+import static org.commonjava.maven.ext.manip.fixture.TestProjects.project;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.ext.manip.ManipulationSession;
+import org.commonjava.maven.ext.manip.model.Project;
+import org.commonjava.maven.ext.manip.rest.FileVersionTranslator;
+import org.commonjava.maven.ext.manip.state.DependencyRESTState;
+import org.commonjava.maven.ext.manip.state.VersioningState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyRESTManipulatorTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    /**
+     * With a batch size of three the POMs below are prefetched as two full batches followed by a partial one, and the
+     * property-based version is only requested by the scan.
+     */
+    @Test
+    public void prefetchTranslatesEveryRequestedGAV()
+        throws Exception
+    {
+        // Read first but not part of the build, so its GAVs must not be translated.
+        final Project unused = project( "unused" );
+        dependency( unused, "org.unused", "unused", "1.0" );
+
+        final Project parent = project( "parent", "version.c2", "3.0" );
+        dependency( parent, "org.a", "a1", "1.0" );
+        dependency( parent, "org.a", "a2", "1.0" );
+        dependency( parent, "org.a", "a3", "1.0" );
+        dependency( parent, "org.a", "a4", "1.0" );
+
+        final Project child = project( "child" );
+        dependency( child, "org.b", "b1", "2.0" );
+        dependency( child, "org.b", "b2", "2.0" );
+        dependency( child, "org.b", "b3", "2.0" );
+        dependency( child, "org.b", "b4", "2.0" );
+
+        final Project tail = project( "tail" );
+        dependency( tail, "org.c", "c1", "3.0" );
+        dependency( tail, "org.c", "c2", "${version.c2}" );
+
+        final List<Project> projects = Arrays.asList( parent, child, tail );
+        final List<ProjectVersionRef> expected = new ArrayList<ProjectVersionRef>();
+        for ( final Project project : projects )
+        {
+            expected.add( project.getKey() );
+            for ( final Dependency d : project.getDependencies() )
+            {
+                expected.add( new ProjectVersionRef( d.getGroupId(), d.getArtifactId(),
+                                                     d.getVersion().startsWith( "$" ) ? "3.0" : d.getVersion() ) );
+            }
+        }
+        final ProjectVersionRef unusedGAV = new ProjectVersionRef( "org.unused", "unused", "1.0" );
+
+        final Map<ProjectVersionRef, String> translations = new HashMap<ProjectVersionRef, String>();
+        for ( final ProjectVersionRef gav : expected )
+        {
+            translations.put( gav, gav.getVersionString() + ".redhat-1" );
+        }
+        translations.put( unused.getKey(), "1.0.redhat-1" );
+        translations.put( unusedGAV, "1.0.redhat-1" );
+
+        final File translationFile = temp.newFile( "translations.bin" );
+        FileVersionTranslator.write( translationFile, translations );
+        final File recordFile = new File( temp.getRoot(), "record.bin" );
+
+        final Properties userProperties = new Properties();
+        userProperties.setProperty( DependencyRESTState.REST_TRANSLATOR, "file" );
+        userProperties.setProperty( DependencyRESTState.REST_TRANSLATION_FILE, translationFile.getPath() );
+        userProperties.setProperty( DependencyRESTState.REST_PREFETCH, "true" );
+        userProperties.setProperty( DependencyRESTState.REST_CHUNK_SIZE, "3" );
+        userProperties.setProperty( DependencyRESTState.REST_RECORD_FILE, recordFile.getPath() );
+
+        final ManipulationSession session = session( userProperties );
+        session.setProjects( projects );
+
+        final DependencyRESTManipulator manipulator = new DependencyRESTManipulator();
+        manipulator.init( session );
+        manipulator.projectRead( unused );
+        for ( final Project project : projects )
+        {
+            manipulator.projectRead( project );
+        }
+        manipulator.scan( projects, session );
+
+        final List<ProjectVersionRef> recordedKeys = new ArrayList<ProjectVersionRef>( expected );
+        recordedKeys.add( unused.getKey() );
+        recordedKeys.add( unusedGAV );
+        final Map<ProjectVersionRef, String> recorded =
+            new FileVersionTranslator( recordFile ).translateVersions( recordedKeys );
+
+        assertThat( recorded.size(), is( expected.size() ) );
+        for ( final ProjectVersionRef gav : expected )
+        {
+            assertThat( gav.toString(), recorded.get( gav ), is( gav.getVersionString() + ".redhat-1" ) );
+        }
+    }
+
+    private static void dependency( final Project project, final String groupId, final String artifactId,
+                                    final String version )
+    {
+        final Dependency dependency = new Dependency();
+        dependency.setGroupId( groupId );
+        dependency.setArtifactId( artifactId );
+        dependency.setVersion( version );
+        project.getModel().addDependency( dependency );
+    }
+
+    private static ManipulationSession session( final Properties userProperties )
+        throws Exception
+    {
+        final ManipulationSession session = new ManipulationSession();
+        final MavenExecutionRequest req =
+            new DefaultMavenExecutionRequest().setUserProperties( userProperties )
+                                              .setRemoteRepositories( Collections.<ArtifactRepository> emptyList() );
+        session.setMavenSession( new MavenSession( new DefaultPlexusContainer(), null, req,
+                                                   new DefaultMavenExecutionResult() ) );
+        session.setState( new VersioningState( userProperties ) );
+        return session;
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class GAVersionIndexTest
+{
+    @Test
+    public void findsEveryOverride()
+    {
+        final Map<String, String> overrides = new LinkedHashMap<String, String>();
+        for ( int g = 0; g < 50; g++ )
+        {
+            for ( int a = 0; a < 40; a++ )
+            {
+                overrides.put( "org.group" + g + ":artifact" + a, g + "." + a );
+            }
+        }
+        overrides.put( "nocolon", "1.0" );
+
+        final GAVersionIndex index = new GAVersionIndex( overrides );
+        assertThat( index.size(), is( 2000 ) );
+
+        final BitSet matched = new BitSet();
+        for ( int g = 0; g < 50; g++ )
+        {
+            for ( int a = 0; a < 40; a++ )
+            {
+                // Build the probe strings so they are never the interned keys.
+                final int entry = index.indexOf( new StringBuilder( "org.group" ).append( g ).toString(),
+                                                 new StringBuilder( "artifact" ).append( a ).toString() );
+                assertThat( index.getKey( entry ), is( "org.group" + g + ":artifact" + a ) );
+                assertThat( index.getVersion( entry ), is( g + "." + a ) );
+                if ( g == 0 )
+                {
+                    matched.set( entry );
+                }
+            }
+        }
+
+        assertThat( index.indexOf( "org.group0", "artifact40" ), is( -1 ) );
+        assertThat( index.indexOf( "org.group50", "artifact0" ), is( -1 ) );
+        assertThat( index.indexOf( null, "artifact0" ), is( -1 ) );
+        assertThat( index.toMap( matched, true ).size(), is( 40 ) );
+        assertThat( index.toMap( matched, false ).keySet().iterator().next(), is( "org.group1:artifact0" ) );
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.impl;
+
+import static org.commonjava.maven.ext.manip.fixture.TestProjects.project;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.junit.Test;
+
+public class ModuleOverrideIndexTest
+{
+    @Test
+    public void appliesExclusionsPerModule()
+        throws Exception
+    {
+        final Map<ArtifactRef, String> overrides = new LinkedHashMap<ArtifactRef, String>();
+        overrides.put( ArtifactRef.parse( "junit:junit:4.1:jar" ), "4.1" );
+        overrides.put( ArtifactRef.parse( "commons-lang:commons-lang:2.5:jar" ), "2.5" );
+        overrides.put( ArtifactRef.parse( "org.foo:parent:1.0:pom" ), "1.0.redhat-1" );
+
+        final Map<String, String> exclusions = new LinkedHashMap<String, String>();
+        exclusions.put( "commons-lang:*@*", "" );
+        exclusions.put( "org.slf4j:slf4j-api@*", "1.7.7" );
+        exclusions.put( "org.slf4j:slf4j-api@org.foo:child", "1.7.2" );
+        exclusions.put( "junit:junit@org.foo:child", "" );
+
+        final ModuleOverrideIndex index =
+            new ModuleOverrideIndex( overrides, exclusions, Arrays.asList( project( "parent" ), project( "child" ) ) );
+
+        final ModuleOverrideIndex.Overrides parent = index.forModule( "org.foo:parent" );
+        assertThat( index.forModule( "org.foo:other" ), sameInstance( parent ) );
+        // Reactor GAs and excluded groups are removed.
+        assertThat( parent.versions.toString(), is( "{junit:junit=4.1}" ) );
+        assertThat( parent.getExplicitOverride( "org.slf4j", "slf4j-api" ), is( "1.7.7" ) );
+
+        // Module-specific exclusions take precedence.
+        final ModuleOverrideIndex.Overrides child = index.forModule( "org.foo:child" );
+        assertThat( child.versions.get( "junit", "junit" ), nullValue() );
+        assertThat( child.getExplicitOverride( "org.slf4j", "slf4j-api" ), is( "1.7.2" ) );
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.impl;
+
+import static org.commonjava.maven.ext.manip.fixture.TestProjects.project;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.ext.manip.model.Project;
+import org.commonjava.maven.ext.manip.state.CommonDependencyState;
+import org.commonjava.maven.ext.manip.state.DependencyState;
+import org.junit.Test;
+
+public class PropertyUpdateGraphTest
+{
+    private final DependencyState state = new DependencyState( new Properties() );
+
+    @Test
+    public void followsChainsAcrossModules()
+        throws Exception
+    {
+        // A cyclic property which no update reaches is not an error.
+        final Project parent =
+            project( "parent", "version.foo", "${version.bar}", "version.unrelated", "${version.unrelated}" );
+        final Project child = project( "child", "version.bar", "1.0", "version.baz", "${version.undefined}" );
+
+        final Map<String, String> updates = new LinkedHashMap<String, String>();
+        updates.put( "version.foo", "2.0" );
+        updates.put( "version.baz", "3.0" );
+        updates.put( "version.none", "4.0" );
+
+        final PropertyUpdateGraph.Result result =
+            new PropertyUpdateGraph( Arrays.asList( parent, child ) ).apply( state, updates );
+
+        assertThat( parent.getModel().getProperties().getProperty( "version.foo" ), is( "${version.bar}" ) );
+        assertThat( child.getModel().getProperties().getProperty( "version.bar" ), is( "2.0" ) );
+        assertThat( result.getRewrites().toString(),
+                    is( "[org.foo:child: version.bar 1.0 -> 2.0 (via version.foo)]" ) );
+        assertThat( result.getUnresolved().toString(), is( "[version.baz, version.none]" ) );
+    }
+
+    @Test
+    public void lastUpdateWins()
+        throws Exception
+    {
+        final Map<String, String> updates = new LinkedHashMap<String, String>();
+        updates.put( "version.bar", "3.0" );
+        updates.put( "version.foo", "2.0" );
+
+        Project project = project( "parent", "version.foo", "${version.bar}", "version.bar", "1.0" );
+        new PropertyUpdateGraph( Collections.singletonList( project ) ).apply( state, updates );
+        assertThat( project.getModel().getProperties().getProperty( "version.bar" ), is( "2.0" ) );
+
+        updates.remove( "version.bar" );
+        updates.put( "version.bar", "3.0" );
+
+        project = project( "parent", "version.foo", "${version.bar}", "version.bar", "1.0" );
+        new PropertyUpdateGraph( Collections.singletonList( project ) ).apply( state, updates );
+        assertThat( project.getModel().getProperties().getProperty( "version.bar" ), is( "3.0" ) );
+    }
+
+    @Test
+    public void appliesStrictAlignment()
+        throws Exception
+    {
+        final Properties userProperties = new Properties();
+        userProperties.setProperty( CommonDependencyState.STRICT_DEPENDENCIES, "true" );
+        final DependencyState strict = new DependencyState( userProperties );
+
+        final Project project = project( "parent", "version.foo", "1.0", "version.bar", "1.0" );
+        final Map<String, String> updates = new LinkedHashMap<String, String>();
+        updates.put( "version.foo", "1.0.redhat-1" );
+        updates.put( "version.bar", "2.0" );
+
+        final PropertyUpdateGraph.Result result =
+            new PropertyUpdateGraph( Collections.singletonList( project ) ).apply( strict, updates );
+
+        assertThat( project.getModel().getProperties().getProperty( "version.foo" ), is( "1.0.redhat-1" ) );
+        assertThat( project.getModel().getProperties().getProperty( "version.bar" ), is( "1.0" ) );
+        assertThat( result.getUnresolved().isEmpty(), is( true ) );
+    }
+
+    @Test
+    public void appliesStrictAlignmentToCompositeValues()
+        throws Exception
+    {
+        final Properties userProperties = new Properties();
+        userProperties.setProperty( CommonDependencyState.STRICT_DEPENDENCIES, "true" );
+        final DependencyState strict = new DependencyState( userProperties );
+
+        // A composite value is compared with what it resolves to, or with its literal value if that is impossible.
+        final Project project =
+            project( "parent", "version.major", "1", "version.minor", "2", "version.foo",
+                     "${version.major}.${version.minor}", "version.bar", "${version.major}.${version.minor}",
+                     "version.cyclic", "${version.loop}-final", "version.loop", "${version.loop}" );
+        final Map<String, String> updates = new LinkedHashMap<String, String>();
+        updates.put( "version.foo", "1.2.redhat-1" );
+        updates.put( "version.bar", "2.0" );
+        updates.put( "version.cyclic", "1.0.redhat-1" );
+
+        final PropertyUpdateGraph.Result result =
+            new PropertyUpdateGraph( Collections.singletonList( project ) ).apply( strict, updates );
+
+        final Properties properties = project.getModel().getProperties();
+        assertThat( properties.getProperty( "version.foo" ), is( "1.2.redhat-1" ) );
+        assertThat( properties.getProperty( "version.bar" ), is( "${version.major}.${version.minor}" ) );
+        assertThat( properties.getProperty( "version.cyclic" ), is( "${version.loop}-final" ) );
+        assertThat( result.getRewrites().size(), is( 1 ) );
+    }
+
+    @Test
+    public void detectsCycles()
+        throws Exception
+    {
+        final Project project = project( "parent", "a", "${b}", "b", "${c}", "c", "${a}" );
+        try
+        {
+            new PropertyUpdateGraph( Collections.singletonList( project ) )
+                .apply( state, Collections.singletonMap( "b", "1.0" ) );
+            fail( "Cyclic reference not detected" );
+        }
+        catch ( final ManipulationException e )
+        {
+            assertThat( e.getMessage(), is( "Cyclic property reference while updating b: b -> c -> a -> b" ) );
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.commonjava.maven.ext.manip.ManipulationSession;
+import org.commonjava.maven.ext.manip.model.Project;
+import org.commonjava.maven.ext.manip.state.DependencyState;
+import org.commonjava.maven.ext.manip.state.State;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+public class TransitiveOverrideTest
+{
+    private static final int BOM_SIZE = 10000;
+
+    private static final int GROUPS = 1000;
+
+    private static final int MANAGED = 100;
+
+    private ManipulationSession session;
+
+    private Map<ArtifactRef, String> bom;
+
+    @Before
+    public void before()
+        throws Exception
+    {
+        final Properties userProperties = new Properties();
+        userProperties.setProperty( DependencyState.DEPENDENCY_MANAGEMENT_POM_PROPERTY, "org.foo:bom:1.0" );
+        userProperties.setProperty( "versionPropertyFormat", "VG" );
+
+        session = new ManipulationSession();
+        final MavenExecutionRequest req =
+            new DefaultMavenExecutionRequest().setUserProperties( userProperties )
+                                              .setRemoteRepositories( Collections.<ArtifactRepository> emptyList() );
+        session.setMavenSession( new MavenSession( new DefaultPlexusContainer(), null, req,
+                                                   new DefaultMavenExecutionResult() ) );
+        session.setState( new DependencyState( userProperties ) );
+
+        bom = new LinkedHashMap<ArtifactRef, String>();
+        for ( int i = 0; i < BOM_SIZE; i++ )
+        {
+            bom.put( ArtifactRef.parse( "org.group" + ( i % GROUPS ) + ":artifact" + i + ":1.0:jar" ),
+                     "1.0.redhat-1" );
+        }
+    }
+
+    /**
+     * Injecting the unmatched entries of a 10k-entry BOM used to rewrite every version property once per injected
+     * entry, which took minutes.
+     */
+    @Test( timeout = 5000 )
+    public void testInjectTransitiveOverridesPerformance()
+        throws Exception
+    {
+        // Disable logging for this test as impacts timing.
+        ( (Logger) LoggerFactory.getLogger( Logger.ROOT_LOGGER_NAME ) ).setLevel( Level.WARN );
+
+        final Project project = project();
+        final List<Project> projects = Collections.singletonList( project );
+        session.setProjects( projects );
+
+        final Set<Project> changed = new Manipulation().internalApplyChanges( projects, session, bom );
+
+        assertThat( changed.size(), is( 1 ) );
+        final List<Dependency> managed = project.getModel().getDependencyManagement().getDependencies();
+        assertThat( managed.size(), is( BOM_SIZE ) );
+        // Injected entries come first, in BOM order.
+        assertThat( managed.get( 0 ).getArtifactId(), is( "artifact" + MANAGED ) );
+        assertThat( managed.get( BOM_SIZE - 1 ).getArtifactId(), is( "artifact" + ( MANAGED - 1 ) ) );
+        assertThat( project.getModel().getProperties().size(), is( GROUPS ) );
+    }
+
+    private static Project project()
+        throws Exception
+    {
+        final Model model = new Model();
+        model.setGroupId( "org.foo" );
+        model.setArtifactId( "parent" );
+        model.setVersion( "1.0" );
+
+        final DependencyManagement dependencyManagement = new DependencyManagement();
+        for ( int i = 0; i < MANAGED; i++ )
+        {
+            final Dependency dependency = new Dependency();
+            dependency.setGroupId( "org.group" + ( i % GROUPS ) );
+            dependency.setArtifactId( "artifact" + i );
+            dependency.setVersion( "1.0" );
+            dependencyManagement.addDependency( dependency );
+        }
+        model.setDependencyManagement( dependencyManagement );
+
+        final Project project = new Project( new File( "pom.xml" ), model );
+        project.setInheritanceRoot( true );
+        return project;
+    }
+
+    private static final class Manipulation
+        extends CommonDependencyManipulation
+    {
+        @Override
+        public Map<? extends ProjectRef, String> load( final State state, final ManipulationSession session )
+        {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.state;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Properties;
+
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.junit.Test;
+
+public class DependencyRESTStateTest
+{
+
+    @Test
+    public void fileTranslatorDisabledWithoutFile()
+        throws Exception
+    {
+        final Properties p = new Properties();
+        p.setProperty( DependencyRESTState.REST_TRANSLATOR, "file" );
+
+        final DependencyRESTState state = new DependencyRESTState( p );
+
+        assertThat( state.isFileTranslator(), equalTo( true ) );
+        assertThat( state.isEnabled(), equalTo( false ) );
+    }
+
+    @Test
+    public void fileTranslatorEnabledWithFile()
+        throws Exception
+    {
+        final Properties p = new Properties();
+        p.setProperty( DependencyRESTState.REST_TRANSLATOR, "file" );
+        p.setProperty( DependencyRESTState.REST_TRANSLATION_FILE, "translations.json" );
+
+        final DependencyRESTState state = new DependencyRESTState( p );
+
+        assertThat( state.isEnabled(), equalTo( true ) );
+    }
+
+    @Test( expected = ManipulationException.class )
+    public void rejectsUnknownTranslator()
+        throws Exception
+    {
+        final Properties p = new Properties();
+        p.setProperty( DependencyRESTState.REST_TRANSLATOR, "ftp" );
+
+        new DependencyRESTState( p );
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares {@link GAMatcher} with {@link WildcardMap} for 10k patterns and 100k lookups. This is not run as part of
+ * the build; run it with <code>mvn test -Dtest=GAMatcherBenchmark</code>.
+ */
+public class GAMatcherBenchmark
+{
+    private static final int PATTERNS = 10000;
+
+    private static final int LOOKUPS = 100000;
+
+    private static final int ROUNDS = 10;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Test
+    public void compareWithWildcardMap()
+    {
+        final Random random = new Random( 42 );
+
+        // Patterns both can express: exact artifacts, and every artifact of a group.
+        final List<ProjectRef> patterns = new ArrayList<ProjectRef>( PATTERNS );
+        for ( int i = 0; i < PATTERNS; i++ )
+        {
+            final String groupId = "org.example.group" + i + ".sub" + ( i % 17 );
+            patterns.add( new ProjectRef( groupId, i % 10 == 0 ? "*" : "artifact-" + i ) );
+        }
+
+        final List<ProjectRef> lookups = new ArrayList<ProjectRef>( LOOKUPS );
+        for ( int i = 0; i < LOOKUPS; i++ )
+        {
+            final int group = random.nextInt( PATTERNS * 2 );
+            final int artifact = random.nextBoolean() ? group : random.nextInt( PATTERNS );
+            lookups.add( new ProjectRef( "org.example.group" + group + ".sub" + ( group % 17 ),
+                                         "artifact-" + artifact ) );
+        }
+
+        final WildcardMap wildcardMap = new WildcardMap();
+        final GAMatcher matcher = new GAMatcher();
+        for ( final ProjectRef pattern : patterns )
+        {
+            wildcardMap.put( pattern, pattern.toString() );
+            matcher.put( pattern, pattern.toString() );
+        }
+
+        for ( final ProjectRef lookup : lookups )
+        {
+            assertThat( lookup.toString(), matcher.get( lookup.getGroupId(), lookup.getArtifactId() ),
+                        is( wildcardMap.get( lookup ) ) );
+        }
+
+        long wildcardMapTime = Long.MAX_VALUE;
+        long matcherTime = Long.MAX_VALUE;
+        int matches = 0;
+        for ( int round = 0; round < ROUNDS; round++ )
+        {
+            long start = System.nanoTime();
+            for ( final ProjectRef lookup : lookups )
+            {
+                if ( wildcardMap.get( lookup ) != null )
+                {
+                    matches++;
+                }
+            }
+            wildcardMapTime = Math.min( wildcardMapTime, System.nanoTime() - start );
+
+            start = System.nanoTime();
+            for ( final ProjectRef lookup : lookups )
+            {
+                if ( matcher.get( lookup.getGroupId(), lookup.getArtifactId() ) != null )
+                {
+                    matches++;
+                }
+            }
+            matcherTime = Math.min( matcherTime, System.nanoTime() - start );
+        }
+
+        logger.info( "{} lookups over {} patterns ({} matches): WildcardMap {} ms, GAMatcher {} ms", LOOKUPS,
+                     PATTERNS, matches / ( 2 * ROUNDS ), wildcardMapTime / 1000000, matcherTime / 1000000 );
+    }
+}
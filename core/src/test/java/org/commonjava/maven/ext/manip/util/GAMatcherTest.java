@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectRef;
+import org.junit.Test;
+
+public class GAMatcherTest
+{
+    private static final int PATTERNS = 10000;
+
+    private static final int LOOKUPS = 100000;
+
+    @Test
+    public void matchesPatterns()
+    {
+        final GAMatcher matcher = new GAMatcher();
+        matcher.put( "org.jboss.*", "*", "jboss" );
+        matcher.put( "*", "jackson-*", "jackson" );
+        matcher.put( ProjectRef.parse( "junit:junit" ), "junit" );
+        matcher.put( "org.*.spec*", "*-api", "spec" );
+
+        assertThat( matcher.get( "org.jboss.logging", "jboss-logging" ), is( "jboss" ) );
+        assertThat( matcher.get( "org.jboss.as.cli", "jboss-as-cli" ), is( "jboss" ) );
+        assertThat( matcher.get( "org.jboss", "jboss-parent" ), nullValue() );
+        assertThat( matcher.get( "com.fasterxml.jackson.core", "jackson-databind" ), is( "jackson" ) );
+        assertThat( matcher.get( "junit", "junit" ), is( "junit" ) );
+        assertThat( matcher.get( "junit", "junit-dep" ), nullValue() );
+        assertThat( matcher.get( "org.glassfish.spec.javax.servlet", "servlet-api" ), is( "spec" ) );
+        // More literal leading groupId segments win.
+        assertThat( matcher.get( "org.jboss.spec.javax.servlet", "jboss-servlet-api" ), is( "jboss" ) );
+        assertThat( matcher.get( "org.apache", "commons-io" ), nullValue() );
+        assertThat( matcher.containsKey( "org.codehaus.jackson", "jackson-core-asl" ), is( true ) );
+        assertThat( matcher.size(), is( 4 ) );
+    }
+
+    @Test
+    public void mostSpecificPatternWins()
+    {
+        final GAMatcher matcher = new GAMatcher();
+        matcher.put( "*", "*", "any" );
+        matcher.put( "org.*", "*", "org" );
+        matcher.put( "org.jboss.*", "*", "jboss" );
+        matcher.put( "org.jboss.*", "jboss-*", "jboss-artifact" );
+        matcher.put( "org.jboss.logging", "*", "logging" );
+        matcher.put( "org.jboss.logging", "jboss-logging", "exact" );
+        matcher.put( "org.hibernate", "hibernate-*", "hibernate" );
+
+        assertThat( matcher.get( "org.jboss.logging", "jboss-logging" ), is( "exact" ) );
+        assertThat( matcher.get( "org.jboss.logging", "jboss-logmanager" ), is( "logging" ) );
+        assertThat( matcher.get( "org.jboss.as", "jboss-as-cli" ), is( "jboss-artifact" ) );
+        assertThat( matcher.get( "org.jboss.as", "wildfly-cli" ), is( "jboss" ) );
+        assertThat( matcher.get( "org.apache", "commons-io" ), is( "org" ) );
+        // The artifactId does not match the exact group's patterns, so less specific groups are tried.
+        assertThat( matcher.get( "org.hibernate", "antlr" ), is( "org" ) );
+        assertThat( matcher.get( "com.google", "guava" ), is( "any" ) );
+
+        matcher.put( "org.jboss.logging", "jboss-logging", "replaced" );
+        assertThat( matcher.get( "org.jboss.logging", "jboss-logging" ), is( "replaced" ) );
+    }
+
+    @Test
+    public void matchesGlobs()
+    {
+        assertThat( GAMatcher.matches( "jackson-*", "jackson-core", 0 ), is( true ) );
+        assertThat( GAMatcher.matches( "*-api", "servlet-api", 0 ), is( true ) );
+        assertThat( GAMatcher.matches( "a*b*c", "axxbyybc", 0 ), is( true ) );
+        assertThat( GAMatcher.matches( "a*b*c", "axxbyyb", 0 ), is( false ) );
+        assertThat( GAMatcher.matches( "spec*", "org.spec.javax", 4 ), is( true ) );
+        assertThat( GAMatcher.matches( "*", "", 0 ), is( true ) );
+    }
+
+    @Test
+    public void testManyPatterns()
+    {
+        // Every artifact of each tenth group, otherwise a single artifact per group.
+        final GAMatcher matcher = new GAMatcher();
+        for ( int i = 0; i < PATTERNS; i++ )
+        {
+            matcher.put( group( i ), i % 10 == 0 ? "*" : "artifact-" + i, Integer.toString( i ) );
+        }
+
+        final Random random = new Random( 42 );
+        for ( int i = 0; i < LOOKUPS; i++ )
+        {
+            final int group = random.nextInt( PATTERNS * 2 );
+            final int artifact = random.nextBoolean() ? group : random.nextInt( PATTERNS );
+            final boolean matched = group < PATTERNS && ( group % 10 == 0 || artifact == group );
+
+            assertThat( matcher.get( group( group ), "artifact-" + artifact ),
+                        is( matched ? Integer.toString( group ) : null ) );
+        }
+    }
+
+    private static String group( final int i )
+    {
+        return "org.example.group" + i + ".sub" + ( i % 17 );
+    }
+}
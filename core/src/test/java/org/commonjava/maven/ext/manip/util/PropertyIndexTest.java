@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.util;
+
+import static org.commonjava.maven.ext.manip.fixture.TestProjects.project;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.ext.manip.model.Project;
+import org.junit.Test;
+
+public class PropertyIndexTest
+{
+    @Test
+    public void resolvesChainsAcrossProjects()
+        throws Exception
+    {
+        final Project parent = project( "parent", "version.foo", "${version.bar}", "version.bar", "1.0" );
+        final Project child = project( "child", "version.bar", "2.0", "version.baz", "${version.undefined}" );
+
+        final PropertyIndex index = new PropertyIndex( Arrays.asList( parent, child ) );
+
+        // The last definition in reactor order wins.
+        assertThat( index.resolve( "${version.foo}" ), is( "2.0" ) );
+        assertThat( index.resolve( "${version.baz}" ), is( "${version.undefined}" ) );
+        assertThat( index.resolve( "1.0" ), is( "1.0" ) );
+    }
+
+    @Test
+    public void resolvesExpressions()
+        throws Exception
+    {
+        final Properties properties = new Properties();
+        properties.setProperty( "version.major", "1" );
+        properties.setProperty( "version.minor", "${version.micro}" );
+        properties.setProperty( "version.micro", "2" );
+        properties.setProperty( "version.full", "${version.major}.${version.minor}.Final" );
+
+        final PropertyIndex index = new PropertyIndex( properties );
+
+        final VersionExpression expression = VersionExpression.parse( "${version.major}.${version.minor}" );
+        assertThat( expression.isComposite(), is( true ) );
+        assertThat( expression.getProperties(), is( Arrays.asList( "version.major", "version.minor" ) ) );
+        assertThat( VersionExpression.parse( "${version.major}.${version.minor}" ), sameInstance( expression ) );
+        assertThat( VersionExpression.parse( "1.${unterminated" ).isLiteral(), is( true ) );
+
+        assertThat( index.resolve( expression ), is( "1.2" ) );
+        assertThat( index.resolve( "${version.full}" ), is( "1.2.Final" ) );
+        assertThat( index.resolve( "${version.major}-${version.undefined}" ), is( "1-${version.undefined}" ) );
+    }
+
+    @Test
+    public void detectsCycles()
+        throws Exception
+    {
+        final Properties properties = new Properties();
+        properties.setProperty( "a", "${b}" );
+        properties.setProperty( "b", "${c}" );
+        properties.setProperty( "c", "${a}" );
+
+        try
+        {
+            new PropertyIndex( properties ).resolve( "${a}" );
+            fail( "Cyclic reference not detected" );
+        }
+        catch ( final ManipulationException e )
+        {
+            assertThat( e.getMessage(), is( "Cyclic property reference: a -> b -> c -> a" ) );
+        }
+    }
+}
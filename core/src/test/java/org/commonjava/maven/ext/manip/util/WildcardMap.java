@@ -29,8 +29,11 @@ import org.slf4j.LoggerFactory;
  *     String(groupId) : Map (where Map contains String(artifactId):String(value) ).
  * </p>
  * artifactId may be a wildcard (*) or an explicit value.
+ * <p>
+ * Replaced by {@link GAMatcher}; kept only as the baseline for {@link GAMatcherBenchmark}.
+ * </p>
  */
-public class WildcardMap
+class WildcardMap
 {
     private static final String WILDCARD = "*";
 
@@ -52,8 +55,17 @@ public class WildcardMap
      */
     public boolean containsKey(ProjectRef key)
     {
-        String groupId = key.getGroupId();
-        String artifactId = key.getArtifactId();
+        return containsKey(key.getGroupId(), key.getArtifactId());
+    }
+
+    /**
+     * @param groupId the groupId of the key to look for
+     * @param artifactId the artifactId of the key to look for
+     * @return <tt>true</tt> if this map contains a mapping for the specified
+     * key.
+     */
+    public boolean containsKey(String groupId, String artifactId)
+    {
         boolean result;
 
         LinkedHashMap vMap = map.get(groupId);
@@ -137,14 +149,23 @@ public class WildcardMap
      */
     public String get(ProjectRef key)
     {
-        String groupId = key.getGroupId();
-        String artifactId = key.getArtifactId();
+        return get(key.getGroupId(), key.getArtifactId());
+    }
+
+    /**
+     * @param groupId the groupId of the key, as with {@link #get(ProjectRef)}.
+     * @param artifactId the artifactId of the key.
+     * @return the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     */
+    public String get(String groupId, String artifactId)
+    {
         String result = null;
 
         LinkedHashMap<String, String> value = map.get(groupId);
         if (value != null)
         {
-            logger.debug("Retrieved value map of " + value);
+            logger.debug("Retrieved value map of {}", value);
             if ( value.get(WILDCARD) != null)
             {
                 result = value.get(WILDCARD);
@@ -154,7 +175,7 @@ public class WildcardMap
                 result = value.get(artifactId);
             }
         }
-        logger.debug("Returning result of " + result);
+        logger.debug("Returning result of {}", result);
 
         return result;
     }
@@ -29,6 +29,9 @@ import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
 import org.commonjava.maven.atlas.ident.ref.VersionlessArtifactRef;
 import org.commonjava.maven.ext.manip.ManipulationException;
 import org.commonjava.maven.ext.manip.resolver.GalleyAPIWrapper;
+import org.commonjava.maven.ext.manip.util.NamedThreadFactory;
+import org.commonjava.maven.ext.manip.util.PropertyIndex;
+import org.commonjava.maven.ext.manip.util.VersionExpression;
 import org.commonjava.maven.galley.TransferException;
 import org.commonjava.maven.galley.maven.GalleyMavenException;
 import org.commonjava.maven.galley.maven.model.view.DependencyView;
@@ -37,14 +40,27 @@ import org.commonjava.maven.galley.model.Transfer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
@@ -54,6 +70,20 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
 @Component( role = ModelIO.class )
 public class ModelIO
 {
+    /**
+     * Whether to share the cached remote models between all sessions in the JVM resolving from the same repositories,
+     * for instance the workers of a CLI batch, rather than keeping them per component. Defaults to false.
+     */
+    public static final String SHARED_CACHE_PROP = "manipulation.remote.sharedCache";
+
+    /**
+     * The directory to cache the dependency version overrides computed from release BOMs in. Defaults to
+     * <code>.cache/pom-manipulation-ext/bom-overrides</code> beneath the local repository, so that the cache survives
+     * <code>mvn clean</code>.
+     */
+    public static final String OVERRIDE_CACHE_DIR_PROP = "manipulation.remote.overrideCacheDir";
+
+    private static ModelCache sharedCache;
 
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
@@ -63,6 +93,27 @@ public class ModelIO
     @Requirement
     private GalleyAPIWrapper galleyWrapper;
 
+    private ModelCache cache = new ModelCache( null );
+
+    private boolean cacheShared;
+
+    private File overrideCacheDir;
+
+    /**
+     * The POM views read during the session. A view wraps a DOM document bound to the session's galley
+     * infrastructure, so views are only ever read, never modified, and never handed out of this class.
+     */
+    private final ConcurrentMap<ProjectVersionRef, MavenPomView> views =
+        new ConcurrentHashMap<ProjectVersionRef, MavenPomView>();
+
+    private final AtomicInteger modelHits = new AtomicInteger();
+
+    private final AtomicInteger modelMisses = new AtomicInteger();
+
+    private final AtomicInteger viewHits = new AtomicInteger();
+
+    private final AtomicInteger viewMisses = new AtomicInteger();
+
     /**
      * Protected constructor for component instantiation/injection
      */
@@ -71,8 +122,18 @@ public class ModelIO
 
     }
 
+    public ModelIO( final GalleyAPIWrapper galleyWrapper )
+    {
+        this.galleyWrapper = galleyWrapper;
+    }
+
     /**
      * Read the raw model (equivalent to the pom file on disk) from a given GAV.
+     * <p>
+     * Models are cached, and release models kept for later sessions resolving from the same repositories (see
+     * {@link #beginSession(Properties)}); each caller receives its own copy so that modifications made by one manipulator are
+     * never seen by another.
+     * </p>
      *
      * @param ref the ProjectVersion to read.
      * @return the Maven Model for the GAV
@@ -80,6 +141,154 @@ public class ModelIO
      */
     public Model resolveRawModel( final ProjectVersionRef ref )
         throws ManipulationException
+    {
+        final ConcurrentMap<ProjectVersionRef, Model> models = cache.models;
+        Model model = models.get( ref );
+        if ( model == null )
+        {
+            modelMisses.incrementAndGet();
+            model = readRawModel( ref );
+
+            final Model existing = models.putIfAbsent( ref, model );
+            if ( existing != null )
+            {
+                model = existing;
+            }
+        }
+        else
+        {
+            modelHits.incrementAndGet();
+        }
+        return model.clone();
+    }
+
+    /**
+     * Read the POM view of a given GAV, cached for the lifetime of the session (see {@link #endSession()}). Views are
+     * shared between callers and must be treated as read-only.
+     */
+    private MavenPomView readPomView( final ProjectVersionRef ref )
+        throws GalleyMavenException
+    {
+        MavenPomView view = views.get( ref );
+        if ( view == null )
+        {
+            viewMisses.incrementAndGet();
+            view = galleyWrapper.readPomView( ref );
+
+            final MavenPomView existing = views.putIfAbsent( ref, view );
+            if ( existing != null )
+            {
+                view = existing;
+            }
+        }
+        else
+        {
+            viewHits.incrementAndGet();
+        }
+        return view;
+    }
+
+    /**
+     * Prepare the caches for a session, once the galley infrastructure has been initialised for it. The release models
+     * kept from earlier sessions are discarded unless they were resolved from the same repositories, local repository
+     * and settings.
+     *
+     * @param userProperties the session's user properties; see {@link #SHARED_CACHE_PROP} and
+     * {@link #OVERRIDE_CACHE_DIR_PROP}.
+     */
+    public void beginSession( final Properties userProperties )
+    {
+        final String overrideCacheProperty = userProperties.getProperty( OVERRIDE_CACHE_DIR_PROP );
+        final File localRepository = galleyWrapper.getLocalRepositoryDir();
+        if ( overrideCacheProperty != null && overrideCacheProperty.trim().length() > 0 )
+        {
+            overrideCacheDir = new File( overrideCacheProperty.trim() );
+        }
+        else if ( localRepository != null )
+        {
+            overrideCacheDir = new File( localRepository, ".cache/pom-manipulation-ext/bom-overrides" );
+        }
+        else
+        {
+            overrideCacheDir = null;
+        }
+
+        final List<Object> key = galleyWrapper.getResolutionKey();
+        if ( Boolean.parseBoolean( userProperties.getProperty( SHARED_CACHE_PROP ) ) )
+        {
+            synchronized ( ModelIO.class )
+            {
+                if ( sharedCache == null || !sharedCache.isFor( key ) )
+                {
+                    sharedCache = replace( sharedCache, key );
+                }
+                cache = sharedCache;
+            }
+            cacheShared = true;
+        }
+        else if ( cacheShared || !cache.isFor( key ) )
+        {
+            // Never keep using, or clearing, a cache other sessions rely on.
+            cache = cacheShared ? new ModelCache( key ) : replace( cache, key );
+            cacheShared = false;
+        }
+        views.clear();
+    }
+
+    private ModelCache replace( final ModelCache previous, final List<Object> key )
+    {
+        if ( previous != null && !previous.models.isEmpty() )
+        {
+            logger.debug( "Repositories changed; discarding {} cached remote models", previous.models.size() );
+        }
+        return new ModelCache( key );
+    }
+
+    /**
+     * End a session, logging the cache statistics gathered during it. POM views are bound to the galley
+     * infrastructure of the session and snapshot models may change before the next one, so both are discarded.
+     */
+    public void endSession()
+    {
+        logStatistics();
+        views.clear();
+        for ( final Iterator<ProjectVersionRef> it = cache.models.keySet().iterator(); it.hasNext(); )
+        {
+            if ( it.next().isSnapshot() )
+            {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Discard all cached models and POM views, logging the cache statistics gathered since the last call. A cache
+     * shared with other sessions is left to them and no longer used here.
+     */
+    public void clearCache()
+    {
+        logStatistics();
+        if ( cacheShared )
+        {
+            cache = new ModelCache( null );
+            cacheShared = false;
+        }
+        else
+        {
+            cache.models.clear();
+        }
+        views.clear();
+    }
+
+    private void logStatistics()
+    {
+        logger.debug( "Remote model cache: {} hits, {} misses; POM view cache: {} hits, {} misses",
+                      modelHits.getAndSet( 0 ), modelMisses.getAndSet( 0 ), viewHits.getAndSet( 0 ),
+                      viewMisses.getAndSet( 0 ) );
+    }
+
+    private Model readRawModel( final ProjectVersionRef ref )
+        throws ManipulationException
     {
         Transfer transfer;
         try
@@ -120,11 +329,23 @@ public class ModelIO
     {
         logger.debug( "Resolving dependency management GAV: " + ref );
 
+        final OverrideCache cache = getOverrideCache( ref );
+        final String checksum = cache == null ? null : checksum( ref );
+        if ( checksum != null )
+        {
+            final Map<ArtifactRef, String> cached = cache.read( ref, checksum );
+            if ( cached != null )
+            {
+                logger.debug( "Using {} cached version overrides for: {}", cached.size(), ref );
+                return cached;
+            }
+        }
+
         final Map<ArtifactRef, String> versionOverrides =
                         new LinkedHashMap<ArtifactRef, String>();
         try
         {
-            final MavenPomView pomView = galleyWrapper.readPomView( ref );
+            final MavenPomView pomView = readPomView( ref );
 
             // TODO: active profiles!
             final List<DependencyView> deps = pomView.getAllManagedDependencies();
@@ -146,9 +367,73 @@ public class ModelIO
             throw new ManipulationException( "Unable to resolve: %s", e, ref );
         }
 
+        if ( checksum != null )
+        {
+            cache.write( ref, checksum, versionOverrides );
+        }
+
         return versionOverrides;
     }
 
+    /**
+     * Release BOMs have their computed overrides cached (see {@link #OVERRIDE_CACHE_DIR_PROP}) so that later builds
+     * need not parse them again.
+     *
+     * @return the cache to use for the GAV, or null if it should not be cached.
+     */
+    private OverrideCache getOverrideCache( final ProjectVersionRef ref )
+    {
+        if ( overrideCacheDir == null || !OverrideCache.isCacheable( ref ) )
+        {
+            return null;
+        }
+        return new OverrideCache( overrideCacheDir );
+    }
+
+    /**
+     * @return the SHA-1 of the POM content for the GAV, or null if it cannot be determined.
+     */
+    private String checksum( final ProjectVersionRef ref )
+    {
+        InputStream in = null;
+        try
+        {
+            final Transfer transfer = galleyWrapper.resolveArtifact( ref.asPomArtifact() );
+            if ( transfer == null )
+            {
+                return null;
+            }
+
+            final MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            in = transfer.openInputStream();
+
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+            return String.format( "%040x", new BigInteger( 1, digest.digest() ) );
+        }
+        catch ( final TransferException e )
+        {
+            logger.debug( "Unable to checksum {}: {}", ref, e.getMessage() );
+        }
+        catch ( final IOException e )
+        {
+            logger.debug( "Unable to checksum {}: {}", ref, e.getMessage() );
+        }
+        catch ( final NoSuchAlgorithmException e )
+        {
+            logger.debug( "Unable to checksum {}: {}", ref, e.getMessage() );
+        }
+        finally
+        {
+            closeQuietly( in );
+        }
+        return null;
+    }
+
     public Properties getRemotePropertyMappingOverrides( final ProjectVersionRef ref )
         throws ManipulationException
     {
@@ -168,6 +453,7 @@ public class ModelIO
 
         final Model m = resolveRawModel ( ref );
         final Map<ProjectRef, Plugin> versionOverrides = new HashMap<ProjectRef, Plugin>();
+        final PropertyIndex properties = new PropertyIndex( m.getProperties() );
 
         // TODO: active profiles!
         if ( m.getBuild() != null && m.getBuild().getPluginManagement() != null)
@@ -181,10 +467,10 @@ public class ModelIO
                 Plugin p = plit.next();
                 ProjectRef pr = new ProjectRef (p.getGroupId(), p.getArtifactId());
 
-                if ( p.getVersion().startsWith( "${" ))
+                if ( !VersionExpression.parse( p.getVersion() ).isLiteral() )
                 {
                     // Property reference to something in the remote pom. Resolve and inline it now.
-                    String newVersion = resolveProperty (m.getProperties(), p.getVersion() );
+                    String newVersion = resolveProperty (properties, p.getVersion() );
                     logger.debug( "Replacing plugin override version " + p.getVersion() +
                                   " with " + newVersion);
                     p.setVersion( newVersion );
@@ -195,7 +481,7 @@ public class ModelIO
                 // resolve any properties.
                 if (p.getConfiguration() != null)
                 {
-                    processChildren (m, (Xpp3Dom)p.getConfiguration());
+                    processChildren (properties, (Xpp3Dom)p.getConfiguration());
                 }
 
                 logger.debug( "Added plugin override for: " + pr.toString() + ":" + p.getVersion() +
@@ -212,12 +498,150 @@ public class ModelIO
     }
 
 
+    /**
+     * Resolve the dependency management overrides of each GAV, fetching up to <code>threads</code> BOMs concurrently.
+     *
+     * @param refs the BOMs to resolve.
+     * @param threads the number of BOMs to fetch concurrently; one or less resolves serially.
+     * @return the overrides of each BOM, in the same order as <code>refs</code>.
+     * @throws ManipulationException if any of the BOMs cannot be resolved.
+     */
+    public List<Map<ArtifactRef, String>> getRemoteDependencyVersionOverrides( final List<ProjectVersionRef> refs,
+                                                                               final int threads )
+        throws ManipulationException
+    {
+        return resolveAll( refs, threads, new RemoteResolver<Map<ArtifactRef, String>>()
+        {
+            @Override
+            public Map<ArtifactRef, String> resolve( final ProjectVersionRef ref )
+                throws ManipulationException
+            {
+                return getRemoteDependencyVersionOverrides( ref );
+            }
+        } );
+    }
+
+    /**
+     * Resolve the properties of each GAV, fetching up to <code>threads</code> POMs concurrently.
+     *
+     * @see #getRemoteDependencyVersionOverrides(List, int)
+     */
+    public List<Properties> getRemotePropertyMappingOverrides( final List<ProjectVersionRef> refs, final int threads )
+        throws ManipulationException
+    {
+        return resolveAll( refs, threads, new RemoteResolver<Properties>()
+        {
+            @Override
+            public Properties resolve( final ProjectVersionRef ref )
+                throws ManipulationException
+            {
+                return getRemotePropertyMappingOverrides( ref );
+            }
+        } );
+    }
+
+    /**
+     * Resolve the plugin management overrides of each GAV, fetching up to <code>threads</code> BOMs concurrently.
+     *
+     * @see #getRemoteDependencyVersionOverrides(List, int)
+     */
+    public List<Map<ProjectRef, Plugin>> getRemotePluginVersionOverrides( final List<ProjectVersionRef> refs,
+                                                                          final int threads )
+        throws ManipulationException
+    {
+        return resolveAll( refs, threads, new RemoteResolver<Map<ProjectRef, Plugin>>()
+        {
+            @Override
+            public Map<ProjectRef, Plugin> resolve( final ProjectVersionRef ref )
+                throws ManipulationException
+            {
+                return getRemotePluginVersionOverrides( ref );
+            }
+        } );
+    }
+
+    private interface RemoteResolver<T>
+    {
+        T resolve( ProjectVersionRef ref )
+            throws ManipulationException;
+    }
+
+    /**
+     * Resolve every GAV with the given resolver, returning the results in the order of <code>refs</code> so that
+     * callers can merge them exactly as they would have done serially. If any GAV fails the failure of the earliest
+     * one in the list is thrown.
+     */
+    private <T> List<T> resolveAll( final List<ProjectVersionRef> refs, final int threads,
+                                    final RemoteResolver<T> resolver )
+        throws ManipulationException
+    {
+        final List<T> results = new ArrayList<T>( refs.size() );
+
+        if ( threads <= 1 || refs.size() <= 1 )
+        {
+            for ( final ProjectVersionRef ref : refs )
+            {
+                results.add( resolver.resolve( ref ) );
+            }
+            return results;
+        }
+
+        logger.debug( "Resolving {} remote POMs with {} threads", refs.size(), threads );
+
+        final ExecutorService executor =
+            Executors.newFixedThreadPool( Math.min( threads, refs.size() ), new NamedThreadFactory( "bom-resolver" ) );
+        try
+        {
+            final List<Future<T>> futures = new ArrayList<Future<T>>( refs.size() );
+            for ( final ProjectVersionRef ref : refs )
+            {
+                futures.add( executor.submit( new Callable<T>()
+                {
+                    @Override
+                    public T call()
+                        throws ManipulationException
+                    {
+                        return resolver.resolve( ref );
+                    }
+                } ) );
+            }
+
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                try
+                {
+                    results.add( futures.get( i ).get() );
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new ManipulationException( "Interrupted while resolving: %s", e, refs.get( i ) );
+                }
+                catch ( final ExecutionException e )
+                {
+                    final Throwable cause = e.getCause();
+                    if ( cause instanceof ManipulationException )
+                    {
+                        throw (ManipulationException) cause;
+                    }
+                    throw new ManipulationException( "Unable to resolve: %s", cause, refs.get( i ) );
+                }
+            }
+            return results;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Recursively process the DOM elements to inline any property values from the model.
-     * @param model
+     * @param properties the properties of the model
      * @param parent
      */
-    private void processChildren (Model model, Xpp3Dom parent)
+    private void processChildren (PropertyIndex properties, Xpp3Dom parent)
+        throws ManipulationException
     {
         for ( int i = 0 ; i < parent.getChildCount() ; i++)
         {
@@ -225,11 +649,11 @@ public class ModelIO
 
             if ( child.getChildCount() > 0)
             {
-                processChildren (model, child);
+                processChildren (properties, child);
             }
-            if ( child.getValue() != null && child.getValue().startsWith( "${" ))
+            if ( child.getValue() != null && !VersionExpression.parse( child.getValue() ).isLiteral() )
             {
-                String replacement = resolveProperty (model.getProperties(), child.getValue() );
+                String replacement = resolveProperty (properties, child.getValue() );
 
                 logger.debug( "Replacing child value " + child.getValue() + " with " + replacement );
                 child.setValue( replacement );
@@ -240,25 +664,37 @@ public class ModelIO
 
 
     /**
-     * Recursively resolve a property value.
-     * @param p
-     * @param key
+     * Resolve the property references in a value, following any chain of references. A single reference to an
+     * undefined property resolves to the empty string; within a longer value such a reference is left in place.
+     * @param properties
+     * @param value
      * @return the value of the key
      */
-    private String resolveProperty (Properties p, String key)
+    private String resolveProperty (PropertyIndex properties, String value)
+        throws ManipulationException
     {
-        String result = "";
-        String child = key.substring( 2, key.length() - 1 );
+        final String result = properties.resolve( value );
+        return PropertyIndex.isReference( result ) ? "" : result;
+    }
 
-        if ( p.containsKey( child ) )
+    /**
+     * Remote models, keyed by GAV, along with where they were resolved from; see
+     * {@link GalleyAPIWrapper#getResolutionKey()}.
+     */
+    private static final class ModelCache
+    {
+        private final List<Object> key;
+
+        private final ConcurrentMap<ProjectVersionRef, Model> models = new ConcurrentHashMap<ProjectVersionRef, Model>();
+
+        private ModelCache( final List<Object> key )
         {
-            result = p.getProperty( child );
+            this.key = key;
+        }
 
-            if ( result.startsWith( "${" ) )
-            {
-                result = resolveProperty (p, result);
-            }
+        private boolean isFor( final List<Object> key )
+        {
+            return key != null && key.equals( this.key );
         }
-        return result;
     }
 }
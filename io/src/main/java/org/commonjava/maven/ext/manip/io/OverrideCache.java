@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.io;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk cache of the dependency version overrides computed from a remote BOM. Entries are stored as
+ * <code>groupId/artifactId/version.overrides</code> beneath the cache directory, in a compact binary form headed by
+ * the checksum of the BOM they were computed from; an entry whose checksum no longer matches is ignored and replaced.
+ * <p>
+ * Only release GAVs are cached as their content is not expected to change. All failures are treated as a cache miss,
+ * so the cache can never fail a build; a directory that cannot be written to is only reported once.
+ * </p>
+ */
+final class OverrideCache
+{
+    private static final int MAGIC = 0x504d4543;
+
+    private static final int FORMAT = 1;
+
+    private static final String SUFFIX = ".overrides";
+
+    private static final Set<File> UNWRITABLE = Collections.newSetFromMap( new ConcurrentHashMap<File, Boolean>() );
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final File directory;
+
+    OverrideCache( final File directory )
+    {
+        this.directory = directory;
+    }
+
+    static boolean isCacheable( final ProjectVersionRef ref )
+    {
+        return !ref.isSnapshot();
+    }
+
+    /**
+     * @return the cached overrides for the BOM, or null if there is no entry for this GAV and checksum.
+     */
+    Map<ArtifactRef, String> read( final ProjectVersionRef ref, final String checksum )
+    {
+        final File file = getFile( ref );
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            if ( in.readInt() != MAGIC || in.readInt() != FORMAT || !checksum.equals( in.readUTF() ) )
+            {
+                logger.debug( "Ignoring stale override cache entry {} for {}", file, ref );
+                return null;
+            }
+
+            final int size = in.readInt();
+            final Map<ArtifactRef, String> overrides = new LinkedHashMap<ArtifactRef, String>( size * 4 / 3 + 1 );
+            for ( int i = 0; i < size; i++ )
+            {
+                final String groupId = in.readUTF();
+                final String artifactId = in.readUTF();
+                final String version = in.readUTF();
+                final String type = in.readUTF();
+                final String classifier = in.readBoolean() ? in.readUTF() : null;
+                final boolean optional = in.readBoolean();
+
+                overrides.put( new ArtifactRef( groupId, artifactId, version, type, classifier, optional ),
+                               in.readUTF() );
+            }
+            return overrides;
+        }
+        catch ( final IOException e )
+        {
+            logger.debug( "Unable to read override cache entry {}: {}", file, e.getMessage() );
+        }
+        catch ( final RuntimeException e )
+        {
+            logger.debug( "Unable to read override cache entry {}: {}", file, e.getMessage() );
+        }
+        finally
+        {
+            closeQuietly( in );
+        }
+        return null;
+    }
+
+    /**
+     * Store the overrides computed for the BOM. The entry is written to a temporary file and renamed into place so
+     * that concurrent builds never observe a partial entry.
+     */
+    void write( final ProjectVersionRef ref, final String checksum, final Map<ArtifactRef, String> overrides )
+    {
+        final File file = getFile( ref );
+        final File dir = file.getParentFile();
+
+        File tmp = null;
+        DataOutputStream out = null;
+        try
+        {
+            dir.mkdirs();
+            tmp = File.createTempFile( file.getName(), ".tmp", dir );
+
+            out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT );
+            out.writeUTF( checksum );
+            out.writeInt( overrides.size() );
+            for ( final Map.Entry<ArtifactRef, String> entry : overrides.entrySet() )
+            {
+                final ArtifactRef artifact = entry.getKey();
+                out.writeUTF( artifact.getGroupId() );
+                out.writeUTF( artifact.getArtifactId() );
+                out.writeUTF( artifact.getVersionString() );
+                out.writeUTF( artifact.getType() );
+                out.writeBoolean( artifact.getClassifier() != null );
+                if ( artifact.getClassifier() != null )
+                {
+                    out.writeUTF( artifact.getClassifier() );
+                }
+                out.writeBoolean( artifact.isOptional() );
+                out.writeUTF( entry.getValue() );
+            }
+            out.close();
+            out = null;
+
+            if ( !tmp.renameTo( file ) )
+            {
+                // Windows will not rename over an existing file.
+                file.delete();
+                if ( !tmp.renameTo( file ) )
+                {
+                    writeFailed( file, "unable to rename " + tmp );
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            writeFailed( file, e.getMessage() );
+        }
+        catch ( final RuntimeException e )
+        {
+            writeFailed( file, e.getMessage() );
+        }
+        finally
+        {
+            closeQuietly( out );
+            if ( tmp != null && tmp.exists() )
+            {
+                tmp.delete();
+            }
+        }
+    }
+
+    private void writeFailed( final File file, final String reason )
+    {
+        if ( UNWRITABLE.add( directory.getAbsoluteFile() ) )
+        {
+            logger.info( "Unable to write to the BOM override cache {}; overrides will be computed each build ({})",
+                         directory, reason );
+        }
+        else
+        {
+            logger.debug( "Unable to write override cache entry {}: {}", file, reason );
+        }
+    }
+
+    private File getFile( final ProjectVersionRef ref )
+    {
+        return new File( new File( new File( directory, ref.getGroupId() ), ref.getArtifactId() ),
+                         ref.getVersionString() + SUFFIX );
+    }
+}
@@ -15,23 +15,32 @@
  */
 package org.commonjava.maven.ext.manip.io;
 
-import static org.apache.commons.io.IOUtils.closeQuietly;
-
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.Manifest;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.io.util.DocumentModifier;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.ModelWriter;
@@ -39,16 +48,19 @@ import org.apache.maven.model.io.jdom.MavenJDOMWriter;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.util.WriterFactory;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
 import org.commonjava.maven.ext.manip.ManipulationException;
 import org.commonjava.maven.ext.manip.model.Project;
+import org.commonjava.maven.ext.manip.util.NamedThreadFactory;
 import org.commonjava.maven.galley.maven.parse.PomPeek;
 import org.jdom2.Comment;
 import org.jdom2.Content;
 import org.jdom2.Document;
 import org.jdom2.JDOMException;
 import org.jdom2.filter.ContentFilter;
+import org.jdom2.input.SAXBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,8 +72,19 @@ import org.slf4j.LoggerFactory;
 @Component( role = PomIO.class )
 public class PomIO
 {
+    /**
+     * Notified of each project as soon as its POM has been read, while the rest of the hierarchy is still being read.
+     * Notifications happen on the thread calling {@link PomIO#parseProject(File, int, ProjectListener)}, in the order
+     * the projects are returned. The inheritance and execution root flags of the project are not yet set.
+     */
+    public interface ProjectListener
+    {
+        void projectRead( Project project )
+            throws ManipulationException;
+    }
+
 
-    private static final String MODIFIED_BY = "[Comment: <!-- Modified by POM Manipulation Extension for Maven";
+    private static final String MODIFIED_BY = "Modified by POM Manipulation Extension for Maven";
 
     protected final Logger logger = LoggerFactory.getLogger( getClass() );
 
@@ -71,12 +94,60 @@ public class PomIO
 
     public List<Project> parseProject (final File pom) throws ManipulationException
     {
-        final List<PomPeek> peeked = peekAtPomHierarchy(pom);
-        return readModelsForManipulation( pom, peeked );
+        return parseProject( pom, 1 );
+    }
+
+    /**
+     * Read the projects making up the build rooted at the given POM. If more than one thread is requested every POM is
+     * handed to a worker as soon as it is discovered so that sibling modules are peeked at and parsed concurrently. The
+     * hierarchy walk itself stays serial, so the order and the inheritance-root/execution-root flags of the returned
+     * projects are identical to a single-threaded read.
+     *
+     * @param pom the top level pom file.
+     * @param threads the number of threads to read with; one or less reads serially.
+     * @return a collection of Projects
+     * @throws ManipulationException if an error occurs.
+     */
+    public List<Project> parseProject( final File pom, final int threads )
+        throws ManipulationException
+    {
+        return parseProject( pom, threads, null );
+    }
+
+    /**
+     * As {@link #parseProject(File, int)}, additionally passing every project to the listener as soon as it has been
+     * read so that work depending only on a single POM can overlap with reading the remainder of the build.
+     *
+     * @param pom the top level pom file.
+     * @param threads the number of threads to read with; one or less reads serially.
+     * @param listener optional listener to notify of each project read.
+     * @return a collection of Projects
+     * @throws ManipulationException if an error occurs, including one thrown by the listener.
+     */
+    public List<Project> parseProject( final File pom, final int threads, final ProjectListener listener )
+        throws ManipulationException
+    {
+        if ( threads <= 1 )
+        {
+            return readModelsForManipulation( pom, peekAtPomHierarchy( pom, null, listener ) );
+        }
+
+        logger.debug( "Reading POM hierarchy with {} threads", threads );
+
+        final ExecutorService executor = Executors.newFixedThreadPool( threads, new NamedThreadFactory( "pom-reader" ) );
+        try
+        {
+            return readModelsForManipulation( pom, peekAtPomHierarchy( pom, executor, listener ) );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
     }
 
     /**
-     * Read {@link Model} instances by parsing the POM directly. This is useful to escape some post-processing that happens when the
+     * Build {@link Project} instances from the raw {@link Model}s read alongside each peek. The raw model is read by
+     * parsing the POM directly. This is useful to escape some post-processing that happens when the
      * {@link MavenProject#getOriginalModel()} instance is set.
      *
      * @param executionRoot the top level pom file.
@@ -84,49 +155,22 @@ public class PomIO
      * @return a collection of Projects
      * @throws ManipulationException if an error occurs.
      */
-    private List<Project> readModelsForManipulation( File executionRoot, final List<PomPeek> peeked )
+    private List<Project> readModelsForManipulation( File executionRoot, final List<PomRead> peeked )
         throws ManipulationException
     {
         final List<Project> projects = new ArrayList<Project>();
 
-        for ( final PomPeek peek : peeked )
+        for ( final PomRead read : peeked )
         {
-            final File pom = peek.getPom();
-
-            logger.debug( "Reading raw model for: " + pom );
-
-            // Sucks, but we have to brute-force reading in the raw model.
-            // The effective-model building, below, has a tantalizing getRawModel()
-            // method on the result, BUT this seems to return models that have
-            // the plugin versions set inside profiles...so they're not entirely
-            // raw.
-            Model raw = null;
-            InputStream in = null;
-            try
-            {
-                in = new FileInputStream( pom );
-                raw = new MavenXpp3Reader().read( in );
-            }
-            catch ( final IOException e )
-            {
-                throw new ManipulationException( "Failed to build model for POM: %s.\n--> %s", e, pom, e.getMessage() );
-            }
-            catch ( final XmlPullParserException e )
-            {
-                throw new ManipulationException( "Failed to build model for POM: %s.\n--> %s", e, pom, e.getMessage() );
-            }
-            finally
-            {
-                closeQuietly( in );
-            }
+            final File pom = read.pom;
+            final Project project = read.project;
 
-            if ( raw == null )
+            if ( project == null )
             {
                 continue;
             }
 
-            final Project project = new Project( pom, raw );
-            project.setInheritanceRoot( peek.isInheritanceRoot() );
+            project.setInheritanceRoot( read.peek.isInheritanceRoot() );
 
             if ( executionRoot.equals( pom ))
             {
@@ -149,39 +193,155 @@ public class PomIO
     public void rewritePOMs(final Set<Project> changed)
         throws ManipulationException
     {
-        for ( final Project project : changed )
+        rewritePOMs( changed, 1, false );
+    }
+
+    /**
+     * As {@link #rewritePOMs(Set)} but writes up to <code>threads</code> POMs concurrently. Each project is written
+     * exactly as it would be serially; when writing concurrently every project is attempted and any failures are
+     * reported together in a single exception.
+     * <p>
+     * If <code>skipUnchanged</code> is set each POM is first serialized to memory and only written to disk if that
+     * differs from the current file content. This avoids touching (and bumping the modification time of) POMs that
+     * were listed as changed but whose content has not actually moved.
+     * </p>
+     *
+     * @param changed the modified Projects to write out.
+     * @param threads the number of threads to write with; one or less writes serially.
+     * @param skipUnchanged whether to skip writing POMs whose content is unchanged.
+     * @throws ManipulationException if an error occurs.
+     */
+    public void rewritePOMs( final Set<Project> changed, final int threads, final boolean skipUnchanged )
+        throws ManipulationException
+    {
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+
+        if ( threads <= 1 || changed.size() <= 1 )
         {
-            logger.info( String.format( "%s modified! Rewriting.", project ) );
-            File pom = project.getPom();
+            for ( final Project project : changed )
+            {
+                rewritePOM( project, skipUnchanged, written, skipped );
+            }
+            logger.info( "Rewrote {} POMs; skipped {} unchanged POMs.", written, skipped );
+            return;
+        }
 
-            final Model model = project.getModel();
-            logger.info( "Rewriting: " + model.toString() + " in place of: " + project.getId()
-                         + "\n       to POM: " + pom );
+        logger.debug( "Rewriting {} POMs with {} threads", changed.size(), threads );
+
+        final ExecutorService executor =
+            Executors.newFixedThreadPool( Math.min( threads, changed.size() ), new NamedThreadFactory( "pom-writer" ) );
+        try
+        {
+            final Map<Project, Future<Void>> writes = new LinkedHashMap<Project, Future<Void>>();
+            for ( final Project project : changed )
+            {
+                writes.put( project, executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws ManipulationException
+                    {
+                        rewritePOM( project, skipUnchanged, written, skipped );
+                        return null;
+                    }
+                } ) );
+            }
 
-            write( project, pom, model );
+            final StringBuilder failures = new StringBuilder();
+            Throwable firstFailure = null;
+            int failed = 0;
 
-            // this happens with integration tests!
-            // This is a total hack, but the alternative seems to be adding complexity through a custom model processor.
-            if ( pom.getName()
-                            .equals( "interpolated-pom.xml" ) )
+            for ( final Map.Entry<Project, Future<Void>> write : writes.entrySet() )
             {
-                final File dir = pom.getParentFile();
-                pom = dir == null ? new File( "pom.xml" ) : new File( dir, "pom.xml" );
+                try
+                {
+                    write.getValue().get();
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new ManipulationException( "Interrupted while rewriting POMs", e );
+                }
+                catch ( final ExecutionException e )
+                {
+                    final Throwable cause = e.getCause();
+                    logger.error( "Failed to rewrite " + write.getKey().getPom(), cause );
 
-                write( project, pom, model );
+                    if ( firstFailure == null )
+                    {
+                        firstFailure = cause;
+                    }
+                    failed++;
+                    failures.append( "\n  " )
+                            .append( write.getKey().getPom() )
+                            .append( ": " )
+                            .append( cause.getMessage() );
+                }
             }
+
+            if ( failed > 0 )
+            {
+                throw new ManipulationException( "Failed to rewrite {} of {} POMs:{}", firstFailure, failed,
+                                                 changed.size(), failures );
+            }
+            logger.info( "Rewrote {} POMs; skipped {} unchanged POMs.", written, skipped );
+        }
+        finally
+        {
+            executor.shutdownNow();
         }
     }
 
-    private void write( final Project project, final File pom, final Model model )
+    private void rewritePOM( final Project project, final boolean skipUnchanged, final AtomicInteger written,
+                             final AtomicInteger skipped )
         throws ManipulationException
     {
-        try
+        logger.info( String.format( "%s modified! Rewriting.", project ) );
+        File pom = project.getPom();
+
+        final Model model = project.getModel();
+        logger.info( "Rewriting: " + model.toString() + " in place of: " + project.getId()
+                     + "\n       to POM: " + pom );
+
+        count( write( project, pom, model, skipUnchanged ), written, skipped );
+
+        // this happens with integration tests!
+        // This is a total hack, but the alternative seems to be adding complexity through a custom model processor.
+        if ( pom.getName()
+                        .equals( "interpolated-pom.xml" ) )
+        {
+            final File dir = pom.getParentFile();
+            pom = dir == null ? new File( "pom.xml" ) : new File( dir, "pom.xml" );
+
+            count( write( project, pom, model, skipUnchanged ), written, skipped );
+        }
+    }
+
+    private void count( final boolean wasWritten, final AtomicInteger written, final AtomicInteger skipped )
+    {
+        if ( wasWritten )
         {
-            final MavenJDOMWriter writer = new MavenJDOMWriter( model );
+            written.incrementAndGet();
+        }
+        else
+        {
+            skipped.incrementAndGet();
+        }
+    }
 
+    /**
+     * Write the model to the POM, preserving the formatting of the existing file.
+     *
+     * @return false if the write was skipped because the content would not change.
+     */
+    private boolean write( final Project project, final File pom, final Model model, final boolean skipUnchanged )
+        throws ManipulationException
+    {
+        try
+        {
             final String manifestInformation = project.isInheritanceRoot() ? getManifestInformation() : null;
-            new MavenJDOMWriter().write( model, pom, new DocumentModifier()
+            final DocumentModifier modifier = new DocumentModifier()
             {
                 @Override
                 public void postProcess( final Document doc )
@@ -196,7 +356,8 @@ public class PomIO
                             final Comment c = (Comment) it.next();
 
                             //final Comment c = (Comment) it.next();
-                            if ( c.toString()
+                            if ( c.getText()
+                                  .trim()
                                   .startsWith( MODIFIED_BY ) )
                             {
                                 it.remove();
@@ -210,7 +371,35 @@ public class PomIO
                                                                                   + manifestInformation + "\n" ) ) );
                     }
                 }
-            } );
+            };
+
+            if ( !skipUnchanged )
+            {
+                new MavenJDOMWriter().write( model, pom, modifier );
+                return true;
+            }
+
+            // Same as MavenJDOMWriter.write(Model, File, DocumentModifier) but via memory so that we can compare the
+            // result against the current content. Both buffers are already in memory so they are compared directly
+            // rather than by digest.
+            final byte[] original = FileUtils.readFileToByteArray( pom );
+            final Document doc = new SAXBuilder().build( new ByteArrayInputStream( original ), pom.toURI().toString() );
+
+            final MavenJDOMWriter writer = new MavenJDOMWriter();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream( original.length );
+            final Writer w = WriterFactory.newWriter( out, writer.getEncoding() );
+            writer.write( model, doc, w, modifier );
+            w.flush();
+
+            final byte[] updated = out.toByteArray();
+            if ( Arrays.equals( original, updated ) )
+            {
+                logger.info( "Content of {} is unchanged; not rewriting.", pom );
+                return false;
+            }
+
+            FileUtils.writeByteArrayToFile( pom, updated );
+            return true;
         }
         catch ( final IOException e )
         {
@@ -262,15 +451,17 @@ public class PomIO
         return result;
     }
 
-    private List<PomPeek> peekAtPomHierarchy(final File topPom)
+    private List<PomRead> peekAtPomHierarchy( final File topPom, final ExecutorService executor,
+                                              final ProjectListener listener )
         throws ManipulationException
     {
-        final List<PomPeek> peeked = new ArrayList<PomPeek>();
+        final List<PomRead> peeked = new ArrayList<PomRead>();
+        final Map<File, Future<PomRead>> inFlight = new HashMap<File, Future<PomRead>>();
 
         try
         {
             final LinkedList<File> pendingPoms = new LinkedList<File>();
-            pendingPoms.add( topPom.getCanonicalFile() );
+            enqueue( topPom.getCanonicalFile(), pendingPoms, inFlight, executor );
 
             final String topDir = topPom.getParentFile()
                                         .getCanonicalPath();
@@ -286,11 +477,17 @@ public class PomIO
 
                 logger.debug( "PEEK: " + pom );
 
-                final PomPeek peek = new PomPeek( pom );
+                final PomRead read = read( pom, inFlight );
+                final PomPeek peek = read.peek;
                 final ProjectVersionRef key = peek.getKey();
                 if ( key != null )
                 {
-                    peeked.add( peek );
+                    peeked.add( read );
+
+                    if ( listener != null && read.project != null )
+                    {
+                        listener.projectRead( read.project );
+                    }
 
                     final File dir = pom.getParentFile();
 
@@ -314,7 +511,7 @@ public class PomIO
                         {
                             topLevelParent = parent;
                             logger.debug( "Possible top level parent " + parent );
-                            pendingPoms.add( parent );
+                            enqueue( parent, pendingPoms, inFlight, executor );
                         }
                         else
                         {
@@ -341,7 +538,7 @@ public class PomIO
                             if ( modPom.exists() && !seen.contains( modPom )
                                 && !pendingPoms.contains( modPom ) )
                             {
-                                pendingPoms.addLast( modPom );
+                                enqueue( modPom, pendingPoms, inFlight, executor );
                             }
                             else
                             {
@@ -358,26 +555,27 @@ public class PomIO
 
             final HashSet<ProjectVersionRef> projectrefs = new HashSet<ProjectVersionRef>();
 
-            for ( final PomPeek p : peeked )
+            for ( final PomRead r : peeked )
             {
+                final PomPeek p = r.peek;
                 projectrefs.add( p.getKey() );
 
-                if ( p.getPom()
-                      .equals( topLevelParent ) )
+                if ( r.pom.equals( topLevelParent ) )
                 {
-                    logger.debug( "Setting top level parent to " + p.getPom() + " :: " + p.getKey() );
+                    logger.debug( "Setting top level parent to " + r.pom + " :: " + p.getKey() );
                     p.setInheritanceRoot( true );
                 }
             }
 
             logger.debug( "Searching pom list " + projectrefs.toString() + " for standalone poms..." );
 
-            for ( final PomPeek p : peeked )
+            for ( final PomRead r : peeked )
             {
+                final PomPeek p = r.peek;
                 if ( p.getParentKey() == null ||
                      ! seenThisParent(projectrefs, p.getParentKey()))
                 {
-                    logger.debug( "Found a standalone pom " + p.getPom() + " :: " + p.getKey() );
+                    logger.debug( "Found a standalone pom " + r.pom + " :: " + p.getKey() );
                     p.setInheritanceRoot( true );
                 }
             }
@@ -386,10 +584,65 @@ public class PomIO
         {
             throw new ManipulationException( "Problem peeking at POMs.", e );
         }
+        finally
+        {
+            for ( final Future<PomRead> f : inFlight.values() )
+            {
+                f.cancel( true );
+            }
+        }
 
         return peeked;
     }
 
+    /**
+     * Add a POM to the end of the pending queue. When running concurrently the POM is also submitted for reading
+     * straight away, so it is (usually) available by the time the serial hierarchy walk reaches it.
+     */
+    private void enqueue( final File pom, final LinkedList<File> pendingPoms,
+                          final Map<File, Future<PomRead>> inFlight, final ExecutorService executor )
+    {
+        pendingPoms.addLast( pom );
+
+        if ( executor != null )
+        {
+            inFlight.put( pom, executor.submit( new PomReader( pom ) ) );
+        }
+    }
+
+    /**
+     * Retrieve the read of a POM, either by joining the worker started in
+     * {@link #enqueue(File, LinkedList, Map, ExecutorService)} or by reading it on the calling thread.
+     */
+    private PomRead read( final File pom, final Map<File, Future<PomRead>> inFlight )
+        throws ManipulationException
+    {
+        final Future<PomRead> future = inFlight.remove( pom );
+        if ( future == null )
+        {
+            return new PomReader( pom ).call();
+        }
+
+        try
+        {
+            return future.get();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ManipulationException( "Interrupted while reading POM: %s", e, pom );
+        }
+        catch ( final ExecutionException e )
+        {
+            if ( e.getCause() instanceof ManipulationException )
+            {
+                throw (ManipulationException) e.getCause();
+            }
+            throw new ManipulationException( "Failed to read POM: %s.\n--> %s", e.getCause(), pom,
+                                             e.getCause().getMessage() );
+        }
+    }
+
     /**
      * Search the list of project references to establish if this parent reference exists in them. This
      * determines whether the module is inheriting something inside the project or an external reference.
@@ -409,4 +662,81 @@ public class PomIO
         }
         return false;
     }
+
+    /**
+     * Result of reading a single POM: the peek used to walk the hierarchy and, unless the POM is a template, the
+     * project wrapping its raw model.
+     */
+    private static final class PomRead
+    {
+        private final File pom;
+
+        private final PomPeek peek;
+
+        private final Project project;
+
+        private PomRead( final File pom, final PomPeek peek, final Model model )
+            throws ManipulationException
+        {
+            this.pom = pom;
+            this.peek = peek;
+            this.project = model == null ? null : new Project( pom, model );
+        }
+    }
+
+    /**
+     * Peeks at a POM and, if it has a valid key, reads its raw model. The file is loaded into memory once and both the
+     * peek and the model are parsed from that buffer, so each POM costs a single read from (possibly network) disk.
+     */
+    private final class PomReader
+        implements Callable<PomRead>
+    {
+        private final File pom;
+
+        private PomReader( final File pom )
+        {
+            this.pom = pom;
+        }
+
+        @Override
+        public PomRead call()
+            throws ManipulationException
+        {
+            final byte[] content;
+            try
+            {
+                content = FileUtils.readFileToByteArray( pom );
+            }
+            catch ( final IOException e )
+            {
+                throw new ManipulationException( "Failed to read POM: %s.\n--> %s", e, pom, e.getMessage() );
+            }
+
+            final PomPeek peek = new PomPeek( new ByteArrayInputStream( content ) );
+            if ( peek.getKey() == null )
+            {
+                return new PomRead( pom, peek, null );
+            }
+
+            logger.debug( "Reading raw model for: " + pom );
+
+            // Sucks, but we have to brute-force reading in the raw model.
+            // The effective-model building, below, has a tantalizing getRawModel()
+            // method on the result, BUT this seems to return models that have
+            // the plugin versions set inside profiles...so they're not entirely
+            // raw.
+            try
+            {
+                return new PomRead( pom, peek, new MavenXpp3Reader().read( new ByteArrayInputStream( content ) ) );
+            }
+            catch ( final IOException e )
+            {
+                throw new ManipulationException( "Failed to build model for POM: %s.\n--> %s", e, pom, e.getMessage() );
+            }
+            catch ( final XmlPullParserException e )
+            {
+                throw new ManipulationException( "Failed to build model for POM: %s.\n--> %s", e, pom, e.getMessage() );
+            }
+        }
+    }
 }
@@ -17,6 +17,7 @@ package org.commonjava.maven.ext.manip.resolver;
 
 import java.io.File;
 import java.util.List;
+import java.util.Properties;
 
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.execution.MavenSession;
@@ -34,5 +35,14 @@ public interface ExtensionInfrastructure
                final ArtifactRepository localRepository, final Settings settings, final List<String> activeProfiles)
         throws ManipulationException;
 
+    /**
+     * As {@link #init(File, List, ArtifactRepository, Settings, List)}, additionally passing the user properties of the
+     * build so that the infrastructure can be tuned.
+     */
+    void init( final File targetDirectory, final List<ArtifactRepository> remoteRepositories,
+               final ArtifactRepository localRepository, final Settings settings, final List<String> activeProfiles,
+               final Properties userProperties )
+        throws ManipulationException;
+
     void finish ();
 }
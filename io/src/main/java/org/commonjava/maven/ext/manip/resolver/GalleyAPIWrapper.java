@@ -16,6 +16,7 @@
 package org.commonjava.maven.ext.manip.resolver;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -105,6 +106,22 @@ public class GalleyAPIWrapper
                     .retrieveFirst( MAVEN_REPOS, asPomArtifact );
     }
 
+    /**
+     * @see GalleyInfrastructure#getLocalRepositoryDir()
+     */
+    public File getLocalRepositoryDir()
+    {
+        return infra.getLocalRepositoryDir();
+    }
+
+    /**
+     * @see GalleyInfrastructure#getResolutionKey()
+     */
+    public List<Object> getResolutionKey()
+    {
+        return infra.getResolutionKey();
+    }
+
     public String toXML( final Node config, final boolean includeXmlDeclaration )
     {
         return infra.getXml()
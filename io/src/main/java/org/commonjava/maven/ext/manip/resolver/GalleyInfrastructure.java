@@ -16,18 +16,28 @@
 package org.commonjava.maven.ext.manip.resolver;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.repository.MirrorSelector;
 import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.io.xpp3.SettingsXpp3Writer;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.ext.manip.util.NamedThreadFactory;
+import org.commonjava.maven.ext.manip.util.UserProperties;
 import org.commonjava.maven.galley.TransferManager;
 import org.commonjava.maven.galley.auth.MemoryPasswordManager;
 import org.commonjava.maven.galley.cache.FileCacheProvider;
@@ -68,16 +78,52 @@ import org.commonjava.maven.galley.spi.transport.TransportManager;
 import org.commonjava.maven.galley.transport.TransportManagerImpl;
 import org.commonjava.maven.galley.transport.htcli.HttpClientTransport;
 import org.commonjava.maven.galley.transport.htcli.HttpImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Manager component responsible for setting up and managing the Galley API instances used to resolve POMs and metadata.
- * 
+ * <p>
+ * The instances are kept between sessions, for instance by the CLI daemon, for as long as the repositories, settings,
+ * cache directory and transfer configuration stay the same; the transports, and with them the HTTP connection pool,
+ * are kept regardless. With {@link #TRANSFER_SHARED_PROP} the transfer executor and transports are shared by every
+ * session in the JVM, for instance the workers of a CLI batch.
+ * </p>
+ *
  * @author jdcasey
  */
 @Component( role = ExtensionInfrastructure.class, hint = "galley" )
 public class GalleyInfrastructure
     implements ExtensionInfrastructure
 {
+    /**
+     * Maximum number of threads used for galley transfers. Defaults to 20.
+     */
+    public static final String TRANSFER_THREADS_PROP = "manipulation.transfer.threads";
+
+    /**
+     * Number of transfers that may wait for a thread before the requesting thread runs them itself. Defaults to 500.
+     */
+    public static final String TRANSFER_QUEUE_PROP = "manipulation.transfer.queue";
+
+    /**
+     * Seconds an idle transfer thread is kept before it exits. Defaults to 60.
+     */
+    public static final String TRANSFER_KEEP_ALIVE_PROP = "manipulation.transfer.keepAlive";
+
+    /**
+     * Whether to share a single transfer executor, and the HTTP connection pool, between all sessions in the JVM rather
+     * than creating (and shutting down) one per session. The first session to initialise configures it; a differing
+     * configuration of later sessions is logged and ignored. Defaults to false.
+     */
+    public static final String TRANSFER_SHARED_PROP = "manipulation.transfer.shared";
+
+    private static ThreadPoolExecutor sharedExecutor;
+
+    private static TransportManager sharedTransports;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
     @Requirement
     private MirrorSelector mirrorSelector;
 
@@ -93,7 +139,22 @@ public class GalleyInfrastructure
 
     private XPathManager xpaths;
 
-    private ExecutorService executor;
+    private ThreadPoolExecutor executor;
+
+    private boolean sharedExecutorInUse;
+
+    private File localRepositoryDir;
+
+    private NotFoundCache nfc;
+
+    private TransportManager defaultTransports;
+
+    private List<Object> resolutionKey;
+
+    /**
+     * The configuration the instances were created from, to tell whether they can be reused.
+     */
+    private List<Object> configuration;
 
     protected GalleyInfrastructure()
     {
@@ -125,7 +186,16 @@ public class GalleyInfrastructure
                       final Settings settings, final List<String> activeProfiles)
         throws ManipulationException
     {
-        init( targetDirectory, remoteRepositories, localRepository, settings, activeProfiles, null, null, null );
+        init( targetDirectory, remoteRepositories, localRepository, settings, activeProfiles, new Properties() );
+    }
+
+    @Override
+    public void init( final File targetDirectory, final List<ArtifactRepository> remoteRepositories, final ArtifactRepository localRepository,
+                      final Settings settings, final List<String> activeProfiles, final Properties userProperties )
+        throws ManipulationException
+    {
+        init( targetDirectory, remoteRepositories, localRepository, settings, activeProfiles, null, null, null,
+              userProperties );
     }
 
     private void init( final File targetDirectory, final List<ArtifactRepository> remoteRepositories, final ArtifactRepository localRepository,
@@ -133,6 +203,37 @@ public class GalleyInfrastructure
                        final Transport customTransport, File cacheDir )
         throws ManipulationException
     {
+        init( targetDirectory, remoteRepositories, localRepository, settings, activeProfiles, customLocation,
+              customTransport, cacheDir, new Properties() );
+    }
+
+    private void init( final File targetDirectory, final List<ArtifactRepository> remoteRepositories, final ArtifactRepository localRepository,
+                      final Settings settings, final List<String> activeProfiles, final Location customLocation,
+                       final Transport customTransport, File cacheDir, final Properties userProperties )
+        throws ManipulationException
+    {
+        if ( cacheDir == null )
+        {
+            cacheDir = new File( targetDirectory, "manipulator-cache" );
+        }
+
+        final List<Object> newResolutionKey =
+            getResolutionKey( remoteRepositories, localRepository, settings, activeProfiles, customLocation,
+                              customTransport );
+        final List<Object> newConfiguration =
+            Arrays.<Object> asList( newResolutionKey, cacheDir.getAbsoluteFile(),
+                                    userProperties.getProperty( TRANSFER_THREADS_PROP ),
+                                    userProperties.getProperty( TRANSFER_QUEUE_PROP ),
+                                    userProperties.getProperty( TRANSFER_KEEP_ALIVE_PROP ),
+                                    userProperties.getProperty( TRANSFER_SHARED_PROP ) );
+        if ( newConfiguration.equals( configuration ) && !executor.isShutdown() )
+        {
+            // Only forget what was missing, as it may have been deployed since.
+            logger.debug( "Reusing galley infrastructure" );
+            nfc.clearAllMissing();
+            return;
+        }
+
         try
         {
             final List<Location> custom =
@@ -148,33 +249,42 @@ public class GalleyInfrastructure
             throw new ManipulationException( "Failed to setup Maven-specific LocationExpander: %s", e, e.getMessage() );
         }
 
-        xml = new XMLInfrastructure();
-        xpaths = new XPathManager();
+        if ( xml == null )
+        {
+            xml = new XMLInfrastructure();
+            xpaths = new XPathManager();
+        }
+
+        executor = createExecutor( userProperties );
 
         final TransportManager transports;
         if ( customTransport != null )
         {
             transports = new TransportManagerImpl( customTransport );
         }
-        else
+        else if ( sharedExecutorInUse )
         {
-            transports =
-                new TransportManagerImpl( new HttpClientTransport( new HttpImpl( new MemoryPasswordManager() ) ),
-                                          new FileTransport(), new ZipJarTransport() );
+            transports = getSharedTransports();
         }
-
-        if ( cacheDir == null )
+        else
         {
-            cacheDir = new File( targetDirectory, "manipulator-cache" );
+            if ( defaultTransports == null )
+            {
+                defaultTransports =
+                    new TransportManagerImpl( new HttpClientTransport( new HttpImpl( new MemoryPasswordManager() ) ),
+                                              new FileTransport(), new ZipJarTransport() );
+            }
+            transports = defaultTransports;
         }
 
+        this.localRepositoryDir = localRepository == null ? null : new File( localRepository.getBasedir() );
+
         final FileEventManager fileEvents = new NoOpFileEventManager();
 
         final CacheProvider cache =
             new FileCacheProvider( cacheDir, new HashedLocationPathGenerator(), fileEvents, new NoOpTransferDecorator() );
 
-        final NotFoundCache nfc = new MemoryNotFoundCache();
-        executor = Executors.newCachedThreadPool();
+        nfc = new MemoryNotFoundCache();
 
         final TransferManager transfers =
             new TransferManagerImpl( transports, cache, nfc, fileEvents, new DownloadHandler( nfc, executor ),
@@ -198,6 +308,9 @@ public class GalleyInfrastructure
             new MavenPomReader( xml, locationExpander, artifactManager, xpaths, pluginDefaults, pluginImplications );
 
         metadataReader = new MavenMetadataReader( xml, locationExpander, metadataManager, xpaths );
+
+        resolutionKey = newResolutionKey;
+        configuration = newConfiguration;
     }
 
     public XMLInfrastructure getXml()
@@ -220,7 +333,155 @@ public class GalleyInfrastructure
         return xpaths;
     }
 
+    /**
+     * @return the base directory of the local repository, or null if there is none.
+     */
+    public File getLocalRepositoryDir()
+    {
+        return localRepositoryDir;
+    }
+
+    /**
+     * @return a key identifying where POMs are resolved from: two sessions with equal keys resolve any GAV to the same
+     * POM.
+     */
+    public List<Object> getResolutionKey()
+    {
+        return resolutionKey;
+    }
+
     public void finish() {
-        executor.shutdown();
+        if ( executor == null )
+        {
+            return;
+        }
+
+        logger.debug( "Galley transfer executor: {} active threads, {} queued, {} peak threads, {} completed transfers",
+                      executor.getActiveCount(), executor.getQueue().size(), executor.getLargestPoolSize(),
+                      executor.getCompletedTaskCount() );
+
+        // A shared executor outlives the session; its threads are daemons and time out when idle.
+        if ( !sharedExecutorInUse )
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Object> getResolutionKey( final List<ArtifactRepository> remoteRepositories,
+                                                  final ArtifactRepository localRepository, final Settings settings,
+                                                  final List<String> activeProfiles, final Location customLocation,
+                                                  final Transport customTransport )
+        throws ManipulationException
+    {
+        final List<String> repositories = new ArrayList<String>();
+        if ( remoteRepositories != null )
+        {
+            for ( final ArtifactRepository repository : remoteRepositories )
+            {
+                repositories.add( repository.getId() + '=' + repository.getUrl() );
+            }
+        }
+
+        // Settings do not implement equals, so compare their serialized form.
+        final StringWriter serializedSettings = new StringWriter();
+        if ( settings != null )
+        {
+            try
+            {
+                new SettingsXpp3Writer().write( serializedSettings, settings );
+            }
+            catch ( final IOException e )
+            {
+                throw new ManipulationException( "Unable to serialize settings: {}", e, e.getMessage() );
+            }
+        }
+
+        return Arrays.<Object> asList( repositories, localRepository == null ? null : localRepository.getBasedir(),
+                                       serializedSettings.toString(),
+                                       activeProfiles == null ? null : new ArrayList<String>( activeProfiles ),
+                                       customLocation, customTransport );
+    }
+
+    private ThreadPoolExecutor createExecutor( final Properties userProperties )
+        throws ManipulationException
+    {
+        final int threads = UserProperties.getInteger( userProperties, TRANSFER_THREADS_PROP, 20 );
+        final int queue = UserProperties.getInteger( userProperties, TRANSFER_QUEUE_PROP, 500 );
+        final int keepAlive = UserProperties.getInteger( userProperties, TRANSFER_KEEP_ALIVE_PROP, 60 );
+
+        if ( threads < 1 || queue < 1 || keepAlive < 0 )
+        {
+            throw new ManipulationException( "Invalid transfer executor configuration: {}={}, {}={}, {}={}",
+                                             TRANSFER_THREADS_PROP, String.valueOf( threads ), TRANSFER_QUEUE_PROP,
+                                             String.valueOf( queue ), TRANSFER_KEEP_ALIVE_PROP,
+                                             String.valueOf( keepAlive ) );
+        }
+
+        sharedExecutorInUse = Boolean.valueOf( userProperties.getProperty( TRANSFER_SHARED_PROP, "false" ) );
+        if ( sharedExecutorInUse )
+        {
+            synchronized ( GalleyInfrastructure.class )
+            {
+                if ( sharedExecutor == null || sharedExecutor.isShutdown() )
+                {
+                    sharedExecutor = newExecutor( threads, queue, keepAlive );
+                    return sharedExecutor;
+                }
+
+                final int sharedThreads = sharedExecutor.getMaximumPoolSize();
+                final int sharedQueue =
+                    sharedExecutor.getQueue().size() + sharedExecutor.getQueue().remainingCapacity();
+                final long sharedKeepAlive = sharedExecutor.getKeepAliveTime( TimeUnit.SECONDS );
+                if ( threads != sharedThreads || queue != sharedQueue || keepAlive != sharedKeepAlive )
+                {
+                    logger.warn( "Ignoring transfer executor configuration of {} threads, queue of {}, keep-alive of "
+                                     + "{}s; the shared executor was created with {} threads, queue of {}, keep-alive "
+                                     + "of {}s", threads, queue, keepAlive, sharedThreads, sharedQueue,
+                                 sharedKeepAlive );
+                }
+                else
+                {
+                    logger.debug( "Reusing shared galley transfer executor" );
+                }
+                return sharedExecutor;
+            }
+        }
+        return newExecutor( threads, queue, keepAlive );
+    }
+
+    /**
+     * The transports shared alongside the shared executor. The connection pool allows as many connections to a single
+     * repository as the executor has threads; HttpClient's default of two would serialise the sessions sharing it.
+     */
+    private static synchronized TransportManager getSharedTransports()
+    {
+        if ( sharedTransports == null )
+        {
+            final int threads = sharedExecutor.getMaximumPoolSize();
+            final PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+            connections.setMaxTotal( threads );
+            connections.setDefaultMaxPerRoute( threads );
+
+            sharedTransports =
+                new TransportManagerImpl( new HttpClientTransport( new HttpImpl( new MemoryPasswordManager(),
+                                                                                 connections ) ),
+                                          new FileTransport(), new ZipJarTransport() );
+        }
+        return sharedTransports;
+    }
+
+    private ThreadPoolExecutor newExecutor( final int threads, final int queue, final int keepAlive )
+    {
+        logger.debug( "Creating galley transfer executor with {} threads, queue of {}, keep-alive of {}s", threads,
+                      queue, keepAlive );
+
+        // Once the queue is full transfers run on the requesting thread rather than failing.
+        final ThreadPoolExecutor result =
+            new ThreadPoolExecutor( threads, threads, keepAlive, TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue<Runnable>( queue ),
+                                    new NamedThreadFactory( "galley-transfer" ),
+                                    new ThreadPoolExecutor.CallerRunsPolicy() );
+        result.allowCoreThreadTimeOut( keepAlive > 0 );
+        return result;
     }
 }
@@ -0,0 +1,300 @@
+/**
+ *  Copyright (C) 2015 Red Hat, Inc (jcasey@redhat.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.rest;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * Wraps another {@link VersionTranslator} with an on-disk cache of its results, so that only GAVs which have not been
+ * translated within the TTL are sent to the server. GAVs the server has no best match for are cached too.
+ * <p>
+ * There is one cache file per endpoint URL, holding one <code>timestamp TAB groupId:artifactId:version TAB
+ * bestMatchVersion</code> line per GAV (with an empty best match for negative entries). Expired entries are dropped
+ * whenever the file is rewritten. Failures to read or write the cache are logged and otherwise ignored.
+ * </p>
+ * <p>
+ * Builds sharing the cache may translate concurrently, so new entries are merged into the current file under a lock,
+ * and the result written to a temporary file and renamed into place so that readers never see a partial file.
+ * </p>
+ */
+public class CachingVersionTranslator
+    implements VersionTranslator
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final VersionTranslator delegate;
+
+    private final String endpointUrl;
+
+    private final File cacheFile;
+
+    private final long ttlMillis;
+
+    /**
+     * @param delegate the translator to consult on cache misses.
+     * @param endpointUrl the endpoint the delegate translates with, used to key the cache.
+     * @param cacheDir the directory holding the cache files.
+     * @param ttlMillis how long a translation remains valid.
+     */
+    public CachingVersionTranslator( VersionTranslator delegate, String endpointUrl, File cacheDir, long ttlMillis )
+    {
+        this.delegate = delegate;
+        this.endpointUrl = endpointUrl;
+        this.cacheFile = new File( cacheDir, sha1( endpointUrl ) + ".txt" );
+        this.ttlMillis = ttlMillis;
+    }
+
+    public Map<ProjectVersionRef, String> translateVersions( List<ProjectVersionRef> projects )
+    {
+        final long now = System.currentTimeMillis();
+        final Map<String, Entry> cache = readCache( now );
+
+        final Map<ProjectVersionRef, String> result = new HashMap<ProjectVersionRef, String>();
+        final Set<ProjectVersionRef> misses = new LinkedHashSet<ProjectVersionRef>();
+        int negative = 0;
+
+        for ( ProjectVersionRef project : projects )
+        {
+            final Entry entry = cache.get( key( project ) );
+            if ( entry == null )
+            {
+                misses.add( project );
+            }
+            else if ( entry.bestMatch == null )
+            {
+                negative++;
+            }
+            else
+            {
+                result.put( project, entry.bestMatch );
+            }
+        }
+
+        logger.info( "REST translation cache for {}: {} hits ({} without a best match), {} misses", endpointUrl,
+                     projects.size() - misses.size(), negative, misses.size() );
+
+        if ( misses.isEmpty() )
+        {
+            return result;
+        }
+
+        final Map<ProjectVersionRef, String> translated =
+            delegate.translateVersions( new ArrayList<ProjectVersionRef>( misses ) );
+
+        final Map<String, Entry> added = new HashMap<String, Entry>();
+        for ( ProjectVersionRef project : misses )
+        {
+            final String bestMatch = translated.get( project );
+            added.put( key( project ), new Entry( now, bestMatch ) );
+            if ( bestMatch != null )
+            {
+                result.put( project, bestMatch );
+            }
+        }
+
+        writeCache( added, now );
+
+        return result;
+    }
+
+    private Map<String, Entry> readCache( final long now )
+    {
+        final Map<String, Entry> cache = new HashMap<String, Entry>();
+        if ( !cacheFile.isFile() )
+        {
+            return cache;
+        }
+
+        BufferedReader in = null;
+        try
+        {
+            in = new BufferedReader( new InputStreamReader( new FileInputStream( cacheFile ), "UTF-8" ) );
+            String line;
+            while ( ( line = in.readLine() ) != null )
+            {
+                final String[] fields = line.split( "\t", -1 );
+                if ( fields.length != 3 || line.startsWith( "#" ) )
+                {
+                    continue;
+                }
+
+                final long timestamp = Long.parseLong( fields[0] );
+                if ( now - timestamp < ttlMillis )
+                {
+                    cache.put( fields[1], new Entry( timestamp, fields[2].length() == 0 ? null : fields[2] ) );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Unable to read REST translation cache {}: {}", cacheFile, e.getMessage() );
+        }
+        catch ( NumberFormatException e )
+        {
+            logger.warn( "Ignoring corrupt REST translation cache {}: {}", cacheFile, e.getMessage() );
+            cache.clear();
+        }
+        finally
+        {
+            closeQuietly( in );
+        }
+        return cache;
+    }
+
+    /**
+     * Merge the new entries into the cache file. Threads of this JVM are serialised by the class, as a file lock is held
+     * on behalf of the whole JVM; other processes by the lock on a sibling file, which unlike the cache file itself is
+     * never replaced.
+     */
+    private void writeCache( final Map<String, Entry> added, final long now )
+    {
+        synchronized ( CachingVersionTranslator.class )
+        {
+            RandomAccessFile lockFile = null;
+            try
+            {
+                cacheFile.getParentFile().mkdirs();
+                lockFile = new RandomAccessFile( new File( cacheFile.getPath() + ".lock" ), "rw" );
+                final FileLock lock = lockFile.getChannel().lock();
+                try
+                {
+                    final Map<String, Entry> cache = readCache( now );
+                    cache.putAll( added );
+                    writeCache( cache );
+                }
+                finally
+                {
+                    lock.release();
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.warn( "Unable to lock REST translation cache {}: {}", cacheFile, e.getMessage() );
+            }
+            finally
+            {
+                closeQuietly( lockFile );
+            }
+        }
+    }
+
+    private void writeCache( final Map<String, Entry> cache )
+    {
+        File tmp = null;
+        BufferedWriter out = null;
+        try
+        {
+            tmp = File.createTempFile( cacheFile.getName(), ".tmp", cacheFile.getParentFile() );
+
+            out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tmp ), "UTF-8" ) );
+            out.write( "# " + endpointUrl );
+            out.newLine();
+            for ( Map.Entry<String, Entry> e : cache.entrySet() )
+            {
+                out.write( Long.toString( e.getValue().timestamp ) );
+                out.write( '\t' );
+                out.write( e.getKey() );
+                out.write( '\t' );
+                out.write( e.getValue().bestMatch == null ? "" : e.getValue().bestMatch );
+                out.newLine();
+            }
+            out.close();
+            out = null;
+
+            if ( !tmp.renameTo( cacheFile ) )
+            {
+                // Windows will not rename over an existing file.
+                cacheFile.delete();
+                if ( !tmp.renameTo( cacheFile ) )
+                {
+                    logger.warn( "Unable to store REST translation cache {}", cacheFile );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Unable to write REST translation cache {}: {}", cacheFile, e.getMessage() );
+        }
+        finally
+        {
+            closeQuietly( out );
+            if ( tmp != null && tmp.exists() )
+            {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static String key( ProjectVersionRef project )
+    {
+        return project.getGroupId() + ':' + project.getArtifactId() + ':' + project.getVersionString();
+    }
+
+    private static String sha1( String value )
+    {
+        try
+        {
+            final MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            return String.format( "%040x", new BigInteger( 1, digest.digest( value.getBytes( "UTF-8" ) ) ) );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static final class Entry
+    {
+        private final long timestamp;
+
+        private final String bestMatch;
+
+        private Entry( long timestamp, String bestMatch )
+        {
+            this.timestamp = timestamp;
+            this.bestMatch = bestMatch;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ *  Copyright (C) 2015 Red Hat, Inc (jcasey@redhat.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.rest;
+
+/**
+ * Stops requests to a server once a number of consecutive requests have failed, so that a server which is down fails
+ * the build quickly rather than every remaining chunk waiting out its timeouts and retries. Once the reset period has
+ * passed a single trial request is let through; its success closes the breaker again, its failure keeps it open for
+ * another period.
+ */
+final class CircuitBreaker
+{
+    private final int threshold;
+
+    private final long resetMillis;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    /**
+     * @param threshold number of consecutive failures which open the breaker; zero or less disables it.
+     * @param resetMillis how long the breaker stays open before a trial request is allowed.
+     */
+    CircuitBreaker( final int threshold, final long resetMillis )
+    {
+        this.threshold = threshold;
+        this.resetMillis = resetMillis;
+    }
+
+    synchronized boolean allowRequest()
+    {
+        if ( !isOpen() )
+        {
+            return true;
+        }
+
+        final long now = System.currentTimeMillis();
+        if ( now - openedAt >= resetMillis )
+        {
+            // Hold off everything else until the trial request has completed.
+            openedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized void recordSuccess()
+    {
+        consecutiveFailures = 0;
+    }
+
+    synchronized void recordFailure()
+    {
+        consecutiveFailures++;
+        if ( consecutiveFailures == threshold )
+        {
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    synchronized boolean isOpen()
+    {
+        return threshold > 0 && consecutiveFailures >= threshold;
+    }
+
+    synchronized int getConsecutiveFailures()
+    {
+        return consecutiveFailures;
+    }
+}
@@ -1,45 +1,437 @@
 package org.commonjava.maven.ext.manip.rest;
 
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.Unirest;
-import com.mashape.unirest.http.exceptions.UnirestException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
 import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
 import org.commonjava.maven.ext.manip.rest.exception.ClientException;
 import org.commonjava.maven.ext.manip.rest.exception.RestException;
 import org.commonjava.maven.ext.manip.rest.exception.ServerException;
 import org.commonjava.maven.ext.manip.rest.mapper.ProjectVersionRefMapper;
+import org.commonjava.maven.ext.manip.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
 
 /**
+ * Translates versions via a REST service. Requests failing with a connection error, a timeout or a 5xx response are
+ * retried with jittered exponential backoff (translation is idempotent); consecutive failures open a
+ * {@link CircuitBreaker} which fails the remaining requests straight away.
+ *
  * @author vdedik@redhat.com
  */
 public class DefaultVersionTranslator
     implements VersionTranslator
 {
+    /**
+     * Default maximum number of GAVs sent in a single request.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * Default maximum number of requests in flight at once.
+     */
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /**
+     * Default connect timeout in milliseconds.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    /**
+     * Default read timeout in milliseconds.
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 60000;
+
+    /**
+     * Default number of times a failed request is retried.
+     */
+    public static final int DEFAULT_RETRIES = 3;
+
+    /**
+     * Default delay in milliseconds before the first retry; the delay doubles for every further retry.
+     */
+    public static final long DEFAULT_RETRY_DELAY = 500;
+
+    /**
+     * Default number of consecutive failed requests which open the circuit breaker.
+     */
+    public static final int DEFAULT_CIRCUIT_BREAKER_THRESHOLD = 5;
+
+    /**
+     * Default time in milliseconds the circuit breaker stays open.
+     */
+    public static final long DEFAULT_CIRCUIT_BREAKER_RESET = 30000;
+
+    private static final long MAX_RETRY_DELAY = 30000;
+
+    private static final Random JITTER = new Random();
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
     private String endpointUrl;
 
+    private final int chunkSize;
+
+    private final int concurrency;
+
+    private ProjectVersionRefMapper mapper = new ProjectVersionRefMapper();
+
+    private boolean gzip;
+
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+    private int readTimeout = DEFAULT_READ_TIMEOUT;
+
+    private int retries = DEFAULT_RETRIES;
+
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+
+    private CircuitBreaker circuitBreaker =
+        new CircuitBreaker( DEFAULT_CIRCUIT_BREAKER_THRESHOLD, DEFAULT_CIRCUIT_BREAKER_RESET );
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong retried = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong totalLatency = new AtomicLong();
+
+    private final AtomicLong maxLatency = new AtomicLong();
+
     public DefaultVersionTranslator( String endpointUrl )
+    {
+        this( endpointUrl, DEFAULT_CHUNK_SIZE, DEFAULT_CONCURRENCY );
+    }
+
+    /**
+     * @param endpointUrl the URL of the translation service.
+     * @param chunkSize maximum number of GAVs sent per request; zero or less sends all GAVs in one request.
+     * @param concurrency maximum number of requests in flight at once.
+     */
+    public DefaultVersionTranslator( String endpointUrl, int chunkSize, int concurrency )
     {
         this.endpointUrl = endpointUrl;
-        Unirest.setObjectMapper( new ProjectVersionRefMapper() );
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Set the connect and read timeouts of the requests sent by this translator.
+     *
+     * @param connectTimeout connect timeout in milliseconds.
+     * @param readTimeout read (socket) timeout in milliseconds.
+     */
+    public void setTimeouts( int connectTimeout, int readTimeout )
+    {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Compress request bodies with gzip and accept gzipped responses. The server must accept
+     * <code>Content-Encoding: gzip</code>.
+     *
+     * @param gzip whether to compress request and response bodies.
+     */
+    public void setGzip( boolean gzip )
+    {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Send requests in the grouped format described by {@link ProjectVersionRefMapper}, which states each groupId
+     * and artifactId once. The server must understand it.
+     *
+     * @param grouped whether to use the grouped format.
+     */
+    public void setGroupedFormat( boolean grouped )
+    {
+        this.mapper = new ProjectVersionRefMapper( grouped );
+    }
+
+    /**
+     * @param retries number of times a request failing with a connection error, timeout or 5xx is retried.
+     * @param retryDelay delay in milliseconds before the first retry; it doubles (with random jitter) thereafter.
+     */
+    public void setRetries( int retries, long retryDelay )
+    {
+        this.retries = retries;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * @param threshold number of consecutive failed requests after which no further requests are sent; zero or less
+     * disables the circuit breaker.
+     * @param resetMillis how long to wait before trying the server again.
+     */
+    public void setCircuitBreaker( int threshold, long resetMillis )
+    {
+        this.circuitBreaker = new CircuitBreaker( threshold, resetMillis );
     }
 
-    @SuppressWarnings( "unchecked" )
+    /**
+     * Translate the versions of the given projects. Lists larger than the chunk size are split into chunks which are
+     * sent concurrently (up to the configured concurrency) and the responses merged.
+     */
     public Map<ProjectVersionRef, String> translateVersions( List<ProjectVersionRef> projects )
     {
-        // Execute request to get translated versions
-        HttpResponse<Map> r;
+        final CloseableHttpClient client = createClient();
         try
         {
-            r = Unirest.post( this.endpointUrl )
-                       .header( "accept", "application/json" )
-                       .header( "Content-Type", "application/json" )
-                       .body( projects )
-                       .asObject( Map.class );
+            return translateChunks( client, projects );
+        }
+        finally
+        {
+            closeQuietly( client );
+            logger.info( "REST translation metrics for '{}': {} requests, {} retries, {} failures; "
+                             + "mean latency {}ms, max {}ms", endpointUrl, getRequestCount(), getRetryCount(),
+                         getFailureCount(), getMeanLatency(), getMaxLatency() );
+        }
+    }
+
+    /**
+     * A client for a single call to {@link #translateVersions(List)}, so that the timeouts apply to this translator
+     * alone and its connections are released once the call completes. Chunks sent within the call share its
+     * connections.
+     */
+    private CloseableHttpClient createClient()
+    {
+        final RequestConfig config =
+            RequestConfig.custom().setConnectTimeout( connectTimeout ).setSocketTimeout( readTimeout ).build();
+        final HttpClientBuilder builder = HttpClientBuilder.create()
+                                                           .setDefaultRequestConfig( config )
+                                                           .setMaxConnPerRoute( Math.max( 1, concurrency ) )
+                                                           .setMaxConnTotal( Math.max( 1, concurrency ) );
+        if ( !gzip )
+        {
+            // Otherwise the client would ask for, and decompress, compressed responses of its own accord.
+            builder.disableContentCompression();
+        }
+        return builder.build();
+    }
+
+    private Map<ProjectVersionRef, String> translateChunks( final CloseableHttpClient client,
+                                                            List<ProjectVersionRef> projects )
+    {
+        if ( chunkSize <= 0 || projects.size() <= chunkSize )
+        {
+            return translateChunk( client, projects );
+        }
+
+        final List<List<ProjectVersionRef>> chunks = new ArrayList<List<ProjectVersionRef>>();
+        for ( int i = 0; i < projects.size(); i += chunkSize )
+        {
+            chunks.add( projects.subList( i, Math.min( i + chunkSize, projects.size() ) ) );
         }
-        catch ( UnirestException e )
+
+        logger.debug( "Translating {} GAVs in {} chunks of up to {} with {} concurrent requests", projects.size(),
+                      chunks.size(), chunkSize, concurrency );
+
+        final Map<ProjectVersionRef, String> result = new HashMap<ProjectVersionRef, String>();
+        if ( concurrency <= 1 )
+        {
+            for ( List<ProjectVersionRef> chunk : chunks )
+            {
+                result.putAll( translateChunk( client, chunk ) );
+            }
+            return result;
+        }
+
+        final ExecutorService executor =
+            Executors.newFixedThreadPool( Math.min( concurrency, chunks.size() ),
+                                          new NamedThreadFactory( "rest-translator" ) );
+        try
+        {
+            final List<Future<Map<ProjectVersionRef, String>>> futures =
+                new ArrayList<Future<Map<ProjectVersionRef, String>>>( chunks.size() );
+            for ( final List<ProjectVersionRef> chunk : chunks )
+            {
+                futures.add( executor.submit( new Callable<Map<ProjectVersionRef, String>>()
+                {
+                    @Override
+                    public Map<ProjectVersionRef, String> call()
+                    {
+                        return translateChunk( client, chunk );
+                    }
+                } ) );
+            }
+
+            for ( Future<Map<ProjectVersionRef, String>> future : futures )
+            {
+                try
+                {
+                    result.putAll( future.get() );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RestException(
+                        String.format( "Interrupted while waiting for server '%s'.", this.endpointUrl ) );
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( e.getCause() instanceof RestException )
+                    {
+                        throw (RestException) e.getCause();
+                    }
+                    throw new RestException(
+                        String.format( "Request to server '%s' failed. Exception message: %s", this.endpointUrl,
+                                       e.getCause().getMessage() ) );
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    /**
+     * Send a single request, retrying it on connection errors, timeouts and server errors.
+     */
+    private Map<ProjectVersionRef, String> translateChunk( final CloseableHttpClient client,
+                                                           List<ProjectVersionRef> projects )
+    {
+        for ( int attempt = 0; ; attempt++ )
+        {
+            if ( !circuitBreaker.allowRequest() )
+            {
+                throw new RestException(
+                    String.format( "Not contacting server '%s' as the last %s requests to it failed.",
+                                   this.endpointUrl, circuitBreaker.getConsecutiveFailures() ) );
+            }
+
+            final long start = System.currentTimeMillis();
+            try
+            {
+                final Map<ProjectVersionRef, String> result = sendChunk( client, projects );
+                circuitBreaker.recordSuccess();
+                return result;
+            }
+            catch ( ClientException e )
+            {
+                // The server is up but rejected the request; repeating it will not help.
+                circuitBreaker.recordSuccess();
+                failures.incrementAndGet();
+                throw e;
+            }
+            catch ( RestException e )
+            {
+                circuitBreaker.recordFailure();
+                failures.incrementAndGet();
+                if ( attempt >= retries || circuitBreaker.isOpen() )
+                {
+                    throw e;
+                }
+
+                final long delay = getRetryDelay( attempt );
+                logger.warn( "{} Retrying in {}ms ({} of {}).", e.getMessage(), delay, attempt + 1, retries );
+                retried.incrementAndGet();
+                sleep( delay );
+            }
+            finally
+            {
+                recordLatency( System.currentTimeMillis() - start );
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half the delay is fixed and half random, so that concurrent chunks
+     * failing together do not retry in lock step.
+     */
+    private long getRetryDelay( int attempt )
+    {
+        final long delay = Math.min( MAX_RETRY_DELAY, retryDelay << Math.min( attempt, 16 ) );
+        return delay / 2 + (long) ( JITTER.nextDouble() * ( delay / 2 ) );
+    }
+
+    private void sleep( long delay )
+    {
+        try
+        {
+            Thread.sleep( delay );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RestException(
+                String.format( "Interrupted while waiting to retry server '%s'.", this.endpointUrl ) );
+        }
+    }
+
+    private void recordLatency( long latency )
+    {
+        requests.incrementAndGet();
+        totalLatency.addAndGet( latency );
+
+        long max = maxLatency.get();
+        while ( latency > max && !maxLatency.compareAndSet( max, latency ) )
+        {
+            max = maxLatency.get();
+        }
+    }
+
+    private Map<ProjectVersionRef, String> sendChunk( final CloseableHttpClient client,
+                                                      List<ProjectVersionRef> projects )
+    {
+        // Execute request to get translated versions. The body is only mapped once the status is known to be good,
+        // as error responses usually carry no JSON.
+        final int status;
+        final String content;
+        try
+        {
+            byte[] body = mapper.writeValue( projects ).getBytes( UTF_8 );
+            HttpPost request = new HttpPost( this.endpointUrl );
+            request.setHeader( "accept", "application/json" );
+            request.setHeader( "Content-Type", "application/json" );
+            if ( gzip )
+            {
+                body = compress( body );
+                request.setHeader( "Content-Encoding", "gzip" );
+                request.setHeader( "Accept-Encoding", "gzip" );
+            }
+            request.setEntity( new ByteArrayEntity( body ) );
+
+            final CloseableHttpResponse response = client.execute( request );
+            try
+            {
+                status = response.getStatusLine().getStatusCode();
+                content = response.getEntity() == null ? null : EntityUtils.toString( response.getEntity(), UTF_8 );
+            }
+            finally
+            {
+                response.close();
+            }
+        }
+        catch ( IOException e )
         {
             throw new RestException(
                 String.format( "Request to server '%s' failed. Exception message: %s", this.endpointUrl,
@@ -47,24 +439,81 @@ public class DefaultVersionTranslator
         }
 
         // Handle some corner cases (5xx, 4xx)
-        if ( r.getStatus() / 100 == 5 )
+        if ( status / 100 == 5 )
         {
             throw new ServerException(
                 String.format( "Server at '%s' failed to translate versions. HTTP status code %s.",
-                               this.endpointUrl, r.getStatus() ) );
+                               this.endpointUrl, status ) );
         }
-        else if ( r.getStatus() / 100 == 4 )
+        else if ( status / 100 == 4 )
         {
             throw new ClientException(
                 String.format( "Server at '%s' could not translate versions. HTTP status code %s.",
-                               this.endpointUrl, r.getStatus() ) );
+                               this.endpointUrl, status ) );
         }
 
-        return r.getBody();
+        return mapper.readValue( content );
+    }
+
+    private static byte[] compress( byte[] body )
+    {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream( body.length / 4 + 64 );
+        try
+        {
+            GZIPOutputStream out = new GZIPOutputStream( compressed );
+            out.write( body );
+            out.close();
+        }
+        catch ( IOException e )
+        {
+            throw new RestException( "Unable to compress request: " + e.getMessage() );
+        }
+        return compressed.toByteArray();
     }
 
     public String getEndpointUrl()
     {
         return endpointUrl;
     }
+
+    /**
+     * @return the number of requests sent, including retries.
+     */
+    public long getRequestCount()
+    {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of retries.
+     */
+    public long getRetryCount()
+    {
+        return retried.get();
+    }
+
+    /**
+     * @return the number of failed requests, whether or not they were retried.
+     */
+    public long getFailureCount()
+    {
+        return failures.get();
+    }
+
+    /**
+     * @return the mean request latency in milliseconds.
+     */
+    public long getMeanLatency()
+    {
+        final long count = requests.get();
+        return count == 0 ? 0 : totalLatency.get() / count;
+    }
+
+    /**
+     * @return the highest request latency in milliseconds.
+     */
+    public long getMaxLatency()
+    {
+        return maxLatency.get();
+    }
 }
@@ -0,0 +1,295 @@
+/**
+ *  Copyright (C) 2015 Red Hat, Inc (jcasey@redhat.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.rest;
+
+import org.apache.commons.io.FileUtils;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.ext.manip.rest.exception.RestException;
+import org.commonjava.maven.ext.manip.rest.mapper.ProjectVersionRefMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * Translates versions from a previously captured mapping rather than a live service, so that builds can be replayed
+ * without any network access. Two file formats are read:
+ * <ul>
+ *   <li>JSON, as returned by the translation service (either format understood by {@link ProjectVersionRefMapper}),
+ *   which is loaded into memory.</li>
+ *   <li>An indexed binary form, as written by {@link #write(File, Map)}, which is memory-mapped and searched in
+ *   place so that even very large mappings cost next to nothing to open.</li>
+ * </ul>
+ * The binary form consists of a header (magic, format and entry count), an index of <code>(key hash, record
+ * offset)</code> pairs sorted by hash and the records themselves, each holding the UTF-8
+ * <code>groupId:artifactId:version</code> key and best match version prefixed by their lengths.
+ */
+public class FileVersionTranslator
+    implements VersionTranslator
+{
+    private static final int MAGIC = 0x504d4554;
+
+    private static final int FORMAT = 1;
+
+    private static final int HEADER_SIZE = 12;
+
+    private static final int INDEX_ENTRY_SIZE = 8;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final File file;
+
+    private Map<ProjectVersionRef, String> json;
+
+    private ByteBuffer mapped;
+
+    private int count;
+
+    public FileVersionTranslator( File file )
+    {
+        this.file = file;
+    }
+
+    public Map<ProjectVersionRef, String> translateVersions( List<ProjectVersionRef> projects )
+    {
+        open();
+
+        final Map<ProjectVersionRef, String> result = new HashMap<ProjectVersionRef, String>();
+        for ( ProjectVersionRef project : projects )
+        {
+            final String bestMatch = json != null ? json.get( project ) : lookup( key( project ) );
+            if ( bestMatch != null )
+            {
+                result.put( project, bestMatch );
+            }
+        }
+
+        logger.info( "Translated {} of {} GAVs from {}", result.size(), projects.size(), file );
+        return result;
+    }
+
+    private synchronized void open()
+    {
+        if ( json != null || mapped != null )
+        {
+            return;
+        }
+
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile( file, "r" );
+            if ( raf.length() >= HEADER_SIZE && raf.readInt() == MAGIC )
+            {
+                if ( raf.readInt() != FORMAT )
+                {
+                    throw new RestException( String.format( "Unsupported translation file format in '%s'.", file ) );
+                }
+                count = raf.readInt();
+
+                final MappedByteBuffer buffer = raf.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, raf.length() );
+                mapped = buffer;
+                logger.debug( "Mapped {} translations from {}", count, file );
+            }
+            else
+            {
+                json = new ProjectVersionRefMapper().readValue( FileUtils.readFileToString( file, "UTF-8" ) );
+                logger.debug( "Loaded {} translations from {}", json.size(), file );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new RestException(
+                String.format( "Unable to read translation file '%s'. Exception message: %s", file,
+                               e.getMessage() ) );
+        }
+        finally
+        {
+            // The mapping stays valid once the file is closed.
+            closeQuietly( raf );
+        }
+    }
+
+    /**
+     * Binary search the index for the first entry with the key's hash, then compare the keys of every entry sharing
+     * that hash. Only absolute reads are used, so concurrent lookups need no locking.
+     */
+    private String lookup( String key )
+    {
+        final byte[] wanted = key.getBytes( UTF_8 );
+        final int hash = key.hashCode();
+
+        int low = 0;
+        int high = count - 1;
+        while ( low < high )
+        {
+            final int mid = ( low + high ) >>> 1;
+            if ( indexHash( mid ) < hash )
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        for ( int i = low; i < count && indexHash( i ) == hash; i++ )
+        {
+            int offset = mapped.getInt( HEADER_SIZE + i * INDEX_ENTRY_SIZE + 4 );
+            final int keyLength = mapped.getShort( offset ) & 0xffff;
+            offset += 2;
+
+            if ( keyLength == wanted.length && matches( offset, wanted ) )
+            {
+                offset += keyLength;
+                final byte[] value = new byte[mapped.getShort( offset ) & 0xffff];
+                offset += 2;
+                for ( int j = 0; j < value.length; j++ )
+                {
+                    value[j] = mapped.get( offset + j );
+                }
+                return new String( value, UTF_8 );
+            }
+        }
+        return null;
+    }
+
+    private int indexHash( int entry )
+    {
+        return mapped.getInt( HEADER_SIZE + entry * INDEX_ENTRY_SIZE );
+    }
+
+    private boolean matches( int offset, byte[] wanted )
+    {
+        for ( int i = 0; i < wanted.length; i++ )
+        {
+            if ( mapped.get( offset + i ) != wanted[i] )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write translations in the indexed binary form read by this class. The file is written to a temporary file and
+     * renamed into place.
+     *
+     * @param file the file to write.
+     * @param translations the best match version for each GAV.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write( File file, Map<ProjectVersionRef, String> translations )
+        throws IOException
+    {
+        final List<byte[]> keys = new ArrayList<byte[]>( translations.size() );
+        final List<byte[]> values = new ArrayList<byte[]>( translations.size() );
+        final long[] index = new long[translations.size()];
+
+        int offset = HEADER_SIZE + translations.size() * INDEX_ENTRY_SIZE;
+        for ( Map.Entry<ProjectVersionRef, String> entry : translations.entrySet() )
+        {
+            final String key = key( entry.getKey() );
+            final byte[] keyBytes = key.getBytes( UTF_8 );
+            final byte[] valueBytes = entry.getValue().getBytes( UTF_8 );
+            if ( keyBytes.length > 0xffff || valueBytes.length > 0xffff )
+            {
+                throw new IOException( "Translation of " + key + " is too long to store." );
+            }
+
+            // Pack the hash and record number so that one sort orders the index by hash.
+            index[keys.size()] = ( (long) key.hashCode() << 32 ) | keys.size();
+            keys.add( keyBytes );
+            values.add( valueBytes );
+        }
+        Arrays.sort( index );
+
+        final int[] offsets = new int[keys.size()];
+        for ( int i = 0; i < keys.size(); i++ )
+        {
+            offsets[i] = offset;
+            offset += 4 + keys.get( i ).length + values.get( i ).length;
+        }
+
+        final File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        final File tmp = File.createTempFile( file.getName(), ".tmp", dir );
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT );
+            out.writeInt( keys.size() );
+            for ( long entry : index )
+            {
+                out.writeInt( (int) ( entry >> 32 ) );
+                out.writeInt( offsets[(int) entry] );
+            }
+            for ( int i = 0; i < keys.size(); i++ )
+            {
+                out.writeShort( keys.get( i ).length );
+                out.write( keys.get( i ) );
+                out.writeShort( values.get( i ).length );
+                out.write( values.get( i ) );
+            }
+            out.close();
+            out = null;
+
+            if ( !tmp.renameTo( file ) )
+            {
+                // Windows will not rename over an existing file.
+                file.delete();
+                if ( !tmp.renameTo( file ) )
+                {
+                    throw new IOException( "Unable to rename " + tmp + " to " + file );
+                }
+            }
+        }
+        finally
+        {
+            closeQuietly( out );
+            if ( tmp.exists() )
+            {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static String key( ProjectVersionRef project )
+    {
+        return project.getGroupId() + ':' + project.getArtifactId() + ':' + project.getVersionString();
+    }
+}
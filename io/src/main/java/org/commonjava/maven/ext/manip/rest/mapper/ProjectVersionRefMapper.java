@@ -16,57 +16,168 @@
 
 package org.commonjava.maven.ext.manip.rest.mapper;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.mashape.unirest.http.ObjectMapper;
 import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
 import org.commonjava.maven.ext.manip.rest.exception.RestException;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * Converts between lists of GAVs and the JSON used by the version translation service. Uses the Jackson streaming API
+ * so that no intermediate per-GAV maps are built in either direction.
+ * <p>
+ * Besides the default array of GAV objects, requests may be written in a grouped format which states every groupId and
+ * artifactId only once: <code>{"groupId":{"artifactId":["version",...],...},...}</code>. Responses are accepted in
+ * either the default format or the matching grouped format,
+ * <code>{"groupId":{"artifactId":{"version":"bestMatchVersion",...},...},...}</code>.
+ * </p>
+ *
  * @author vdedik@redhat.com
  */
 @SuppressWarnings( "unchecked" )
 public class ProjectVersionRefMapper implements ObjectMapper
 {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final boolean grouped;
+
+    public ProjectVersionRefMapper()
+    {
+        this( false );
+    }
 
-    private com.fasterxml.jackson.databind.ObjectMapper objectMapper
-        = new com.fasterxml.jackson.databind.ObjectMapper();
+    /**
+     * @param grouped whether to write requests in the grouped format.
+     */
+    public ProjectVersionRefMapper( boolean grouped )
+    {
+        this.grouped = grouped;
+    }
 
     @Override
     public Map<ProjectVersionRef, String> readValue( String s )
     {
-        List<Map<String, Object>> responseBody;
         Map<ProjectVersionRef, String> result = new HashMap<ProjectVersionRef, String>();
 
         try
         {
-            responseBody = objectMapper.readValue( s, List.class );
+            JsonParser parser = JSON_FACTORY.createParser( s );
+            try
+            {
+                JsonToken start = parser.nextToken();
+                if ( start == JsonToken.START_OBJECT )
+                {
+                    readGrouped( parser, result );
+                    return result;
+                }
+                if ( start != JsonToken.START_ARRAY )
+                {
+                    throw new RestException( "Expected a JSON array of GAVs but found " + parser.getCurrentToken() );
+                }
+
+                while ( parser.nextToken() == JsonToken.START_OBJECT )
+                {
+                    String groupId = null;
+                    String artifactId = null;
+                    String version = null;
+                    String bestMatchVersion = null;
+
+                    while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                    {
+                        String field = parser.getCurrentName();
+                        JsonToken value = parser.nextToken();
+
+                        if ( value == JsonToken.VALUE_STRING )
+                        {
+                            if ( "groupId".equals( field ) )
+                            {
+                                groupId = parser.getText();
+                            }
+                            else if ( "artifactId".equals( field ) )
+                            {
+                                artifactId = parser.getText();
+                            }
+                            else if ( "version".equals( field ) )
+                            {
+                                version = parser.getText();
+                            }
+                            else if ( "bestMatchVersion".equals( field ) )
+                            {
+                                bestMatchVersion = parser.getText();
+                            }
+                        }
+                        else
+                        {
+                            // Skips nested values such as availableVersions; a no-op for scalars.
+                            parser.skipChildren();
+                        }
+                    }
+
+                    if ( bestMatchVersion != null )
+                    {
+                        ProjectVersionRef project = new ProjectVersionRef( groupId, artifactId, version );
+                        result.put( project, bestMatchVersion );
+                    }
+                }
+            }
+            finally
+            {
+                parser.close();
+            }
         }
         catch ( IOException e )
         {
             throw new RestException( e.getMessage() );
         }
 
-        for ( Map<String, Object> gav: responseBody )
+        return result;
+    }
+
+    private void readGrouped( JsonParser parser, Map<ProjectVersionRef, String> result )
+        throws IOException
+    {
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
         {
-            String groupId = (String) gav.get( "groupId" );
-            String artifactId = (String) gav.get( "artifactId" );
-            String version = (String) gav.get( "version" );
-            String bestMatchVersion = (String) gav.get( "bestMatchVersion" );
+            String groupId = parser.getCurrentName();
+            if ( parser.nextToken() != JsonToken.START_OBJECT )
+            {
+                throw new RestException( "Expected a JSON object of artifacts for " + groupId + " but found "
+                                             + parser.getCurrentToken() );
+            }
 
-            if ( bestMatchVersion != null )
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
             {
-                ProjectVersionRef project = new ProjectVersionRef( groupId, artifactId, version );
-                result.put( project, bestMatchVersion );
+                String artifactId = parser.getCurrentName();
+                if ( parser.nextToken() != JsonToken.START_OBJECT )
+                {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                while ( parser.nextToken() == JsonToken.FIELD_NAME )
+                {
+                    String version = parser.getCurrentName();
+                    if ( parser.nextToken() == JsonToken.VALUE_STRING )
+                    {
+                        result.put( new ProjectVersionRef( groupId, artifactId, version ), parser.getText() );
+                    }
+                    else
+                    {
+                        parser.skipChildren();
+                    }
+                }
             }
         }
-
-        return result;
     }
 
     @Override
@@ -74,24 +185,73 @@ public class ProjectVersionRefMapper implements ObjectMapper
     {
         List<ProjectVersionRef> projects = (List<ProjectVersionRef>) value;
 
-        List requestBody = new ArrayList();
-        for ( ProjectVersionRef project : projects )
+        StringWriter body = new StringWriter( projects.size() * ( grouped ? 32 : 96 ) );
+        try
         {
-            Map<String, Object> gav = new HashMap<String, Object>();
-            gav.put( "groupId", project.getGroupId() );
-            gav.put( "artifactId", project.getArtifactId() );
-            gav.put( "version", project.getVersionString() );
-
-            requestBody.add( gav );
+            JsonGenerator generator = JSON_FACTORY.createGenerator( body );
+            if ( grouped )
+            {
+                writeGrouped( generator, projects );
+            }
+            else
+            {
+                generator.writeStartArray();
+                for ( ProjectVersionRef project : projects )
+                {
+                    generator.writeStartObject();
+                    generator.writeStringField( "groupId", project.getGroupId() );
+                    generator.writeStringField( "artifactId", project.getArtifactId() );
+                    generator.writeStringField( "version", project.getVersionString() );
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+            generator.close();
+        }
+        catch ( IOException e )
+        {
+            throw new RestException( e.getMessage() );
         }
 
-        try
+        return body.toString();
+    }
+
+    private void writeGrouped( JsonGenerator generator, List<ProjectVersionRef> projects )
+        throws IOException
+    {
+        Map<String, Map<String, List<String>>> groups = new LinkedHashMap<String, Map<String, List<String>>>();
+        for ( ProjectVersionRef project : projects )
         {
-            return objectMapper.writeValueAsString( requestBody );
+            Map<String, List<String>> artifacts = groups.get( project.getGroupId() );
+            if ( artifacts == null )
+            {
+                artifacts = new LinkedHashMap<String, List<String>>();
+                groups.put( project.getGroupId(), artifacts );
+            }
+            List<String> versions = artifacts.get( project.getArtifactId() );
+            if ( versions == null )
+            {
+                versions = new ArrayList<String>( 1 );
+                artifacts.put( project.getArtifactId(), versions );
+            }
+            versions.add( project.getVersionString() );
         }
-        catch ( JsonProcessingException e )
+
+        generator.writeStartObject();
+        for ( Map.Entry<String, Map<String, List<String>>> group : groups.entrySet() )
         {
-            throw new RestException( e.getMessage() );
+            generator.writeObjectFieldStart( group.getKey() );
+            for ( Map.Entry<String, List<String>> artifact : group.getValue().entrySet() )
+            {
+                generator.writeArrayFieldStart( artifact.getKey() );
+                for ( String version : artifact.getValue() )
+                {
+                    generator.writeString( version );
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
         }
+        generator.writeEndObject();
     }
 }
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.io;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.settings.Settings;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.ext.manip.resolver.GalleyAPIWrapper;
+import org.commonjava.maven.ext.manip.resolver.GalleyInfrastructure;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModelIOTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final List<String> profiles = Collections.emptyList();
+
+    private final List<ArtifactRepository> remote = Collections.emptyList();
+
+    @Test
+    public void releaseModelsAreKeptWhileRepositoriesAreUnchanged()
+        throws Exception
+    {
+        final File repository = temp.newFolder( "repository" );
+        final ArtifactRepository local = repository( repository );
+        final ProjectVersionRef release = new ProjectVersionRef( "org.foo", "bar", "1.0" );
+        final ProjectVersionRef snapshot = new ProjectVersionRef( "org.foo", "bar", "1.1-SNAPSHOT" );
+        final File releasePom = deploy( repository, release );
+        final File snapshotPom = deploy( repository, snapshot );
+
+        final GalleyInfrastructure infra =
+            new GalleyInfrastructure( temp.newFolder( "first" ), remote, local, new Settings(), profiles );
+        final ModelIO modelIO = new ModelIO( new GalleyAPIWrapper( infra ) );
+
+        modelIO.beginSession( new Properties() );
+        assertThat( modelIO.resolveRawModel( release ).getVersion(), equalTo( "1.0" ) );
+        assertThat( modelIO.resolveRawModel( snapshot ).getVersion(), equalTo( "1.1-SNAPSHOT" ) );
+        modelIO.endSession();
+        infra.finish();
+
+        // Only the cache can now provide the POMs, as the next session uses a fresh galley cache.
+        FileUtils.forceDelete( releasePom );
+        FileUtils.forceDelete( snapshotPom );
+
+        infra.init( temp.newFolder( "second" ), remote, local, new Settings(), profiles, new Properties() );
+        modelIO.beginSession( new Properties() );
+        assertThat( modelIO.resolveRawModel( release ).getVersion(), equalTo( "1.0" ) );
+        assertUnresolvable( modelIO, snapshot );
+        modelIO.endSession();
+        infra.finish();
+
+        final Settings settings = new Settings();
+        settings.setOffline( true );
+        infra.init( temp.newFolder( "third" ), remote, local, settings, profiles, new Properties() );
+        modelIO.beginSession( new Properties() );
+        assertUnresolvable( modelIO, release );
+        modelIO.endSession();
+        infra.finish();
+    }
+
+    @Test
+    public void sharedModelsAreSeenByOtherSessions()
+        throws Exception
+    {
+        final File repository = temp.newFolder( "repository" );
+        final ArtifactRepository local = repository( repository );
+        final ProjectVersionRef release = new ProjectVersionRef( "org.foo", "bar", "1.0" );
+        final File releasePom = deploy( repository, release );
+
+        final Properties shared = new Properties();
+        shared.setProperty( ModelIO.SHARED_CACHE_PROP, "true" );
+
+        final ModelIO first =
+            new ModelIO( new GalleyAPIWrapper( new GalleyInfrastructure( temp.newFolder( "first" ), remote, local,
+                                                                         new Settings(), profiles ) ) );
+        first.beginSession( shared );
+        assertThat( first.resolveRawModel( release ).getVersion(), equalTo( "1.0" ) );
+        first.endSession();
+
+        FileUtils.forceDelete( releasePom );
+
+        final ModelIO second =
+            new ModelIO( new GalleyAPIWrapper( new GalleyInfrastructure( temp.newFolder( "second" ), remote, local,
+                                                                         new Settings(), profiles ) ) );
+        second.beginSession( shared );
+        assertThat( second.resolveRawModel( release ).getVersion(), equalTo( "1.0" ) );
+        // Clearing after a failed session leaves the shared models to the other sessions.
+        second.clearCache();
+        first.beginSession( shared );
+        assertThat( first.resolveRawModel( release ).getVersion(), equalTo( "1.0" ) );
+        first.endSession();
+
+        // Without the property a session keeps its own cache.
+        second.beginSession( new Properties() );
+        assertUnresolvable( second, release );
+        second.endSession();
+    }
+
+    @Test
+    public void overridesAreCachedOutsideTheBuildDirectory()
+        throws Exception
+    {
+        final File repository = temp.newFolder( "repository" );
+        final ArtifactRepository local = repository( repository );
+        final ProjectVersionRef bom = new ProjectVersionRef( "org.foo", "bom", "1.0" );
+        FileUtils.writeStringToFile( new File( repository, "org/foo/bom/1.0/bom-1.0.pom" ),
+                                     "<project><modelVersion>4.0.0</modelVersion><groupId>org.foo</groupId>"
+                                         + "<artifactId>bom</artifactId><version>1.0</version><dependencyManagement>"
+                                         + "<dependencies><dependency><groupId>org.foo</groupId>"
+                                         + "<artifactId>bar</artifactId><version>1.0.redhat-1</version></dependency>"
+                                         + "</dependencies></dependencyManagement></project>" );
+
+        final File target = temp.newFolder( "target" );
+        final GalleyInfrastructure infra = new GalleyInfrastructure( target, remote, local, new Settings(), profiles );
+        final ModelIO modelIO = new ModelIO( new GalleyAPIWrapper( infra ) );
+
+        modelIO.beginSession( new Properties() );
+        assertThat( modelIO.getRemoteDependencyVersionOverrides( bom ).size(), equalTo( 1 ) );
+        modelIO.endSession();
+        infra.finish();
+
+        final File cached = new File( repository, ".cache/pom-manipulation-ext/bom-overrides/org.foo/bom/1.0.overrides" );
+        assertThat( cached.isFile(), equalTo( true ) );
+        assertThat( new File( target, "manipulator-bom-cache" ).exists(), equalTo( false ) );
+
+        final File configured = temp.newFolder( "configured" );
+        final Properties properties = new Properties();
+        properties.setProperty( ModelIO.OVERRIDE_CACHE_DIR_PROP, configured.getPath() );
+
+        infra.init( target, remote, local, new Settings(), profiles, properties );
+        modelIO.beginSession( properties );
+        assertThat( modelIO.getRemoteDependencyVersionOverrides( bom ).size(), equalTo( 1 ) );
+        modelIO.endSession();
+        infra.finish();
+
+        assertThat( new File( configured, "org.foo/bom/1.0.overrides" ).isFile(), equalTo( true ) );
+    }
+
+    private static void assertUnresolvable( final ModelIO modelIO, final ProjectVersionRef ref )
+    {
+        try
+        {
+            modelIO.resolveRawModel( ref );
+            fail( "Resolved " + ref + " from the cache" );
+        }
+        catch ( final ManipulationException e )
+        {
+            // Expected
+        }
+    }
+
+    private static File deploy( final File repository, final ProjectVersionRef ref )
+        throws Exception
+    {
+        final File pom = new File( repository, "org/foo/" + ref.getArtifactId() + '/' + ref.getVersionString() + '/'
+            + ref.getArtifactId() + '-' + ref.getVersionString() + ".pom" );
+        FileUtils.writeStringToFile( pom, "<project><modelVersion>4.0.0</modelVersion><groupId>" + ref.getGroupId()
+            + "</groupId><artifactId>" + ref.getArtifactId() + "</artifactId><version>" + ref.getVersionString()
+            + "</version></project>" );
+        return pom;
+    }
+
+    private static ArtifactRepository repository( final File basedir )
+    {
+        final ArtifactRepositoryPolicy policy =
+            new ArtifactRepositoryPolicy( true, ArtifactRepositoryPolicy.UPDATE_POLICY_NEVER,
+                                          ArtifactRepositoryPolicy.CHECKSUM_POLICY_WARN );
+        return new MavenArtifactRepository( "local", basedir.toURI().toString(), new DefaultRepositoryLayout(),
+                                            policy, policy );
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.io;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.commonjava.maven.atlas.ident.ref.ArtifactRef;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OverrideCacheTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final ProjectVersionRef bom = new ProjectVersionRef( "org.foo", "bom", "1.0" );
+
+    @Test
+    public void roundTripPreservesOverridesAndOrder()
+        throws Exception
+    {
+        final Map<ArtifactRef, String> overrides = new LinkedHashMap<ArtifactRef, String>();
+        overrides.put( new ArtifactRef( "org.foo", "foo", "1.0", "jar", null, false ), "1.0.redhat-1" );
+        overrides.put( new ArtifactRef( "org.foo", "foo", "1.0", "test-jar", "tests", true ), "1.0.redhat-1" );
+        overrides.put( new ArtifactRef( "org.bar", "bar", "2.1", "pom", null, false ), "2.1.redhat-3" );
+
+        final OverrideCache cache = new OverrideCache( temp.getRoot() );
+        cache.write( bom, "abc", overrides );
+
+        final Map<ArtifactRef, String> result = new OverrideCache( temp.getRoot() ).read( bom, "abc" );
+
+        assertThat( result, equalTo( overrides ) );
+        assertThat( new ArrayList<ArtifactRef>( result.keySet() ),
+                    equalTo( new ArrayList<ArtifactRef>( overrides.keySet() ) ) );
+    }
+
+    @Test
+    public void checksumMismatchIsAMiss()
+        throws Exception
+    {
+        final Map<ArtifactRef, String> overrides = new LinkedHashMap<ArtifactRef, String>();
+        overrides.put( new ArtifactRef( "org.foo", "foo", "1.0", "jar", null, false ), "1.0.redhat-1" );
+
+        final OverrideCache cache = new OverrideCache( temp.getRoot() );
+        cache.write( bom, "abc", overrides );
+
+        assertThat( cache.read( bom, "def" ), nullValue() );
+        assertThat( cache.read( new ProjectVersionRef( "org.foo", "bom", "1.1" ), "abc" ), nullValue() );
+    }
+
+    @Test
+    public void failedWriteIsIgnored()
+        throws Exception
+    {
+        final Map<ArtifactRef, String> overrides = new LinkedHashMap<ArtifactRef, String>();
+        overrides.put( new ArtifactRef( "org.foo", "foo", "1.0", "jar", null, false ), null );
+
+        final OverrideCache cache = new OverrideCache( temp.getRoot() );
+        cache.write( bom, "abc", overrides );
+
+        assertThat( cache.read( bom, "abc" ), nullValue() );
+    }
+
+    @Test
+    public void snapshotsAreNotCacheable()
+    {
+        assertThat( OverrideCache.isCacheable( bom ), equalTo( true ) );
+        assertThat( OverrideCache.isCacheable( new ProjectVersionRef( "org.foo", "bom", "1.0-SNAPSHOT" ) ),
+                    equalTo( false ) );
+    }
+}
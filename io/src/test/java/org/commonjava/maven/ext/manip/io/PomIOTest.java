@@ -0,0 +1,312 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.io;
+
+import static org.apache.commons.lang.StringUtils.countMatches;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.ext.manip.model.Project;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PomIOTest
+{
+    private static final String MODIFIED_BY = "Modified by POM Manipulation Extension for Maven";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final PomIO pomIO = new PomIO();
+
+    @Test
+    public void unchangedPomsAreNotRewritten()
+        throws Exception
+    {
+        final File pom = pom( temp.newFolder( "skip" ), "root", "<properties><foo>1.0</foo></properties>" );
+
+        // The first rewrite adds the comment; rewriting again must replace it rather than add another.
+        pomIO.rewritePOMs( parse( pom ), 1, false );
+        final String rewritten = FileUtils.readFileToString( pom );
+        assertThat( countMatches( rewritten, MODIFIED_BY ), is( 1 ) );
+
+        pom.setLastModified( 1000000000L );
+        pomIO.rewritePOMs( parse( pom ), 1, true );
+        assertThat( FileUtils.readFileToString( pom ), equalTo( rewritten ) );
+        assertThat( pom.lastModified(), is( 1000000000L ) );
+
+        final Set<Project> changed = parse( pom );
+        changed.iterator().next().getModel().getProperties().setProperty( "foo", "2.0" );
+        pomIO.rewritePOMs( changed, 1, true );
+        final String updated = FileUtils.readFileToString( pom );
+        assertThat( updated, not( equalTo( rewritten ) ) );
+        assertThat( updated.contains( "<foo>2.0</foo>" ), is( true ) );
+        assertThat( countMatches( updated, MODIFIED_BY ), is( 1 ) );
+    }
+
+    @Test
+    public void inMemoryRewriteMatchesDirectRewrite()
+        throws Exception
+    {
+        final String properties = "<properties><foo>1.0</foo></properties>";
+        final File direct = pom( temp.newFolder( "direct" ), "root", properties );
+        final File inMemory = pom( temp.newFolder( "memory" ), "root", properties );
+
+        for ( final File pom : new File[] { direct, inMemory } )
+        {
+            final Set<Project> changed = parse( pom );
+            changed.iterator().next().getModel().getProperties().setProperty( "foo", "2.0" );
+            pomIO.rewritePOMs( changed, 1, pom == inMemory );
+        }
+
+        assertThat( FileUtils.readFileToString( inMemory ), equalTo( FileUtils.readFileToString( direct ) ) );
+    }
+
+    @Test
+    public void concurrentParseMatchesSerialParse()
+        throws Exception
+    {
+        final File root = multiModule( temp.newFolder( "parse" ) );
+
+        final List<Project> notified = new ArrayList<Project>();
+        final List<Project> serial = pomIO.parseProject( root, 1, recorder( notified ) );
+        assertThat( describe( serial ),
+                    equalTo( Arrays.asList( "root:true:true", "a:false:false", "b:false:false", "c:true:false",
+                                            "a1:false:false" ) ) );
+        assertThat( notified, equalTo( serial ) );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            notified.clear();
+            final List<Project> concurrent = pomIO.parseProject( root, 4, recorder( notified ) );
+            assertThat( describe( concurrent ), equalTo( describe( serial ) ) );
+            assertThat( notified, equalTo( concurrent ) );
+        }
+    }
+
+    @Test
+    public void concurrentParseReportsFailingModule()
+        throws Exception
+    {
+        final File root = multiModule( temp.newFolder( "broken" ) );
+        final File broken = new File( root.getParentFile(), "b/pom.xml" );
+        FileUtils.writeStringToFile( broken, "<project><modelVersion>4.0.0</modelVersion><groupId>org.foo</groupId>"
+            + "<artifactId>b</artifactId><version>1.0</version><dependencies>" );
+
+        for ( final int threads : new int[] { 1, 4 } )
+        {
+            try
+            {
+                pomIO.parseProject( root, threads, null );
+                fail( "Parsed a broken module with " + threads + " threads" );
+            }
+            catch ( final ManipulationException e )
+            {
+                assertThat( e.getMessage(), e.getMessage().contains( broken.getCanonicalPath() ), is( true ) );
+            }
+        }
+    }
+
+    @Test
+    public void modelsAreReadFromThePeekedContent()
+        throws Exception
+    {
+        final File root = multiModule( temp.newFolder( "models" ) );
+        pom( new File( root.getParentFile(), "b" ), "b",
+             parent( "root" ) + "<properties><foo>${bar}</foo></properties>" );
+
+        for ( final int threads : new int[] { 1, 4 } )
+        {
+            final List<Project> projects = pomIO.parseProject( root, threads, null );
+
+            // The template has no key, so is peeked at but never read as a model.
+            assertThat( projects.size(), is( 5 ) );
+            for ( final Project project : projects )
+            {
+                assertThat( write( project.getModel() ), equalTo( write( read( project.getPom() ) ) ) );
+            }
+            assertThat( projects.get( 2 ).getModel().getProperties().getProperty( "foo" ), equalTo( "${bar}" ) );
+        }
+    }
+
+    @Test
+    public void concurrentRewriteMatchesSerialRewrite()
+        throws Exception
+    {
+        final File serial = multiModule( temp.newFolder( "serial" ) );
+        final File concurrent = multiModule( temp.newFolder( "concurrent" ) );
+
+        pomIO.rewritePOMs( modify( pomIO.parseProject( serial ) ), 1, false );
+        pomIO.rewritePOMs( modify( pomIO.parseProject( concurrent ) ), 4, false );
+
+        for ( final String module : new String[] { "", "a/", "a/a1/", "b/", "c/", "template/" } )
+        {
+            final File expected = new File( serial.getParentFile(), module + "pom.xml" );
+            final File actual = new File( concurrent.getParentFile(), module + "pom.xml" );
+            assertThat( module, FileUtils.readFileToString( actual ), equalTo( FileUtils.readFileToString( expected ) ) );
+        }
+        assertThat( FileUtils.readFileToString( new File( serial.getParentFile(), "a/a1/pom.xml" ) )
+                             .contains( "<rewritten>a1</rewritten>" ), is( true ) );
+    }
+
+    @Test
+    public void concurrentRewriteReportsEveryFailure()
+        throws Exception
+    {
+        final File root = multiModule( temp.newFolder( "failures" ) );
+        final Set<Project> changed = modify( pomIO.parseProject( root ) );
+
+        final File b = new File( root.getParentFile(), "b/pom.xml" );
+        final File c = new File( root.getParentFile(), "c/pom.xml" );
+        FileUtils.forceDelete( b );
+        FileUtils.forceDelete( c );
+
+        try
+        {
+            pomIO.rewritePOMs( changed, 4, false );
+            fail( "Rewrote deleted POMs" );
+        }
+        catch ( final ManipulationException e )
+        {
+            assertThat( e.getMessage(), e.getMessage().startsWith( "Failed to rewrite 2 of 5 POMs" ), is( true ) );
+            assertThat( e.getMessage(), e.getMessage().contains( b.getPath() ), is( true ) );
+            assertThat( e.getMessage(), e.getMessage().contains( c.getPath() ), is( true ) );
+        }
+
+        // Every other POM is still written.
+        assertThat( FileUtils.readFileToString( new File( root.getParentFile(), "a/a1/pom.xml" ) )
+                             .contains( "<rewritten>a1</rewritten>" ), is( true ) );
+    }
+
+    private static Set<Project> modify( final List<Project> projects )
+    {
+        for ( final Project project : projects )
+        {
+            project.getModel().getProperties().setProperty( "rewritten", project.getArtifactId() );
+        }
+        return new LinkedHashSet<Project>( projects );
+    }
+
+    private static Model read( final File pom )
+        throws Exception
+    {
+        final Reader reader = new FileReader( pom );
+        try
+        {
+            return new MavenXpp3Reader().read( reader );
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static String write( final Model model )
+        throws Exception
+    {
+        final StringWriter writer = new StringWriter();
+        new MavenXpp3Writer().write( writer, model );
+        return writer.toString();
+    }
+
+    private static PomIO.ProjectListener recorder( final List<Project> notified )
+    {
+        return new PomIO.ProjectListener()
+        {
+            @Override
+            public void projectRead( final Project project )
+            {
+                notified.add( project );
+            }
+        };
+    }
+
+    /**
+     * @return artifactId:inheritanceRoot:executionRoot of each project, in order.
+     */
+    private static List<String> describe( final List<Project> projects )
+    {
+        final List<String> result = new ArrayList<String>();
+        for ( final Project project : projects )
+        {
+            result.add( project.getArtifactId() + ':' + project.isInheritanceRoot() + ':'
+                + project.isExecutionRoot() );
+        }
+        return result;
+    }
+
+    /**
+     * A build whose root aggregates two child modules, a standalone module and a template; the first child in turn
+     * aggregates a grandchild.
+     *
+     * @return the root POM.
+     */
+    static File multiModule( final File dir )
+        throws Exception
+    {
+        pom( new File( dir, "a" ), "a", parent( "root" ) + "<modules><module>a1</module></modules>" );
+        pom( new File( dir, "a/a1" ), "a1", parent( "a" ) );
+        pom( new File( dir, "b" ), "b", parent( "root" ) );
+        pom( new File( dir, "c" ), "c", "" );
+        FileUtils.writeStringToFile( new File( dir, "template/pom.xml" ),
+                                     "<project><modelVersion>4.0.0</modelVersion></project>" );
+        return pom( dir, "root", "<packaging>pom</packaging><modules><module>a</module><module>b</module>"
+            + "<module>c</module><module>template</module></modules>" );
+    }
+
+    private static String parent( final String artifactId )
+    {
+        return "<parent><groupId>org.foo</groupId><artifactId>" + artifactId
+            + "</artifactId><version>1.0</version><relativePath>../pom.xml</relativePath></parent>";
+    }
+
+    private Set<Project> parse( final File pom )
+        throws Exception
+    {
+        final List<Project> projects = pomIO.parseProject( pom );
+        return new HashSet<Project>( projects );
+    }
+
+    static File pom( final File dir, final String artifactId, final String content )
+        throws Exception
+    {
+        final File pom = new File( dir, "pom.xml" );
+        FileUtils.writeStringToFile( pom, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<project>\n  <modelVersion>4.0.0</modelVersion>\n  <groupId>org.foo</groupId>\n  <artifactId>"
+            + artifactId + "</artifactId>\n  <version>1.0</version>\n  " + content + "\n</project>\n" );
+        return pom;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2012 Red Hat, Inc. (jcasey@redhat.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.resolver;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.settings.Mirror;
+import org.apache.maven.settings.Settings;
+import org.commonjava.maven.ext.manip.ManipulationException;
+import org.commonjava.maven.galley.maven.ArtifactManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GalleyInfrastructureTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final List<String> profiles = Collections.emptyList();
+
+    @Test
+    public void reusedWhileConfigurationIsUnchanged()
+        throws Exception
+    {
+        final File target = temp.newFolder( "target" );
+        final ArtifactRepository local = repository( "local", temp.newFolder( "repository" ) );
+        final List<ArtifactRepository> remote = Collections.singletonList( repository( "remote", temp.newFolder() ) );
+
+        final GalleyInfrastructure infra = new GalleyInfrastructure();
+        infra.init( target, remote, local, new Settings(), profiles, new Properties() );
+        final ArtifactManager artifacts = infra.getArtifactManager();
+        final List<Object> key = infra.getResolutionKey();
+
+        // Settings are compared by content, as each session receives its own copy.
+        infra.init( target, remote, local, new Settings(), profiles, new Properties() );
+        assertThat( infra.getArtifactManager(), sameInstance( artifacts ) );
+
+        // A different build directory needs a new galley cache, but still resolves the same POMs.
+        infra.init( temp.newFolder( "other" ), remote, local, new Settings(), profiles, new Properties() );
+        assertThat( infra.getArtifactManager(), not( sameInstance( artifacts ) ) );
+        assertThat( infra.getResolutionKey(), equalTo( key ) );
+
+        final Settings mirrored = new Settings();
+        final Mirror mirror = new Mirror();
+        mirror.setId( "mirror" );
+        mirror.setMirrorOf( "*" );
+        mirror.setUrl( "http://nowhere.com" );
+        mirrored.addMirror( mirror );
+        infra.init( target, remote, local, mirrored, profiles, new Properties() );
+        assertThat( infra.getResolutionKey(), not( equalTo( key ) ) );
+
+        infra.init( target, Collections.<ArtifactRepository> emptyList(), local, new Settings(), profiles,
+                    new Properties() );
+        assertThat( infra.getResolutionKey(), not( equalTo( key ) ) );
+
+        infra.init( target, remote, local, new Settings(), profiles, new Properties() );
+        assertThat( infra.getResolutionKey(), equalTo( key ) );
+
+        // Once the transfer executor has been shut down everything depending upon it is rebuilt.
+        final ArtifactManager rebuilt = infra.getArtifactManager();
+        infra.finish();
+        infra.init( target, remote, local, new Settings(), profiles, new Properties() );
+        assertThat( infra.getArtifactManager(), not( sameInstance( rebuilt ) ) );
+        infra.finish();
+    }
+
+    @Test
+    public void emptyTransferSettingsUseDefaults()
+        throws Exception
+    {
+        final Properties userProperties = new Properties();
+        userProperties.setProperty( GalleyInfrastructure.TRANSFER_THREADS_PROP, "" );
+        userProperties.setProperty( GalleyInfrastructure.TRANSFER_QUEUE_PROP, " " );
+
+        final GalleyInfrastructure infra = new GalleyInfrastructure();
+        infra.init( temp.newFolder( "target" ), Collections.<ArtifactRepository> emptyList(),
+                    repository( "local", temp.newFolder( "repository" ) ), new Settings(), profiles, userProperties );
+        infra.finish();
+    }
+
+    @Test( expected = ManipulationException.class )
+    public void invalidTransferSettingsFail()
+        throws Exception
+    {
+        final Properties userProperties = new Properties();
+        userProperties.setProperty( GalleyInfrastructure.TRANSFER_THREADS_PROP, "many" );
+
+        new GalleyInfrastructure().init( temp.newFolder( "target" ), Collections.<ArtifactRepository> emptyList(),
+                                         repository( "local", temp.newFolder( "repository" ) ), new Settings(),
+                                         profiles, userProperties );
+    }
+
+    static ArtifactRepository repository( final String id, final File basedir )
+    {
+        final ArtifactRepositoryPolicy policy =
+            new ArtifactRepositoryPolicy( true, ArtifactRepositoryPolicy.UPDATE_POLICY_NEVER,
+                                          ArtifactRepositoryPolicy.CHECKSUM_POLICY_WARN );
+        return new MavenArtifactRepository( id, basedir.toURI().toString(), new DefaultRepositoryLayout(), policy,
+                                            policy );
+    }
+}
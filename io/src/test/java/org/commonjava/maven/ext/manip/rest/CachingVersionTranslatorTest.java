@@ -0,0 +1,131 @@
+/**
+ *  Copyright (C) 2015 Red Hat, Inc (jcasey@redhat.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.rest;
+
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CachingVersionTranslatorTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final ProjectVersionRef known = new ProjectVersionRef( "com.example", "example", "1.0" );
+
+    private final ProjectVersionRef unknown = new ProjectVersionRef( "com.example", "unknown", "1.0" );
+
+    private final RecordingTranslator server = new RecordingTranslator();
+
+    @Test
+    public void onlyMissesAreSentToTheServer()
+    {
+        VersionTranslator translator = new CachingVersionTranslator( server, "http://a", temp.getRoot(), 60000 );
+
+        Map<ProjectVersionRef, String> first = translator.translateVersions( Arrays.asList( known, unknown ) );
+
+        // A fresh instance reads the cache from disk.
+        translator = new CachingVersionTranslator( server, "http://a", temp.getRoot(), 60000 );
+        Map<ProjectVersionRef, String> second = translator.translateVersions( Arrays.asList( known, unknown ) );
+
+        Map<ProjectVersionRef, String> expected = new HashMap<ProjectVersionRef, String>();
+        expected.put( known, "1.0-redhat-1" );
+
+        assertThat( first, is( expected ) );
+        assertThat( second, is( expected ) );
+        assertThat( server.requests.size(), is( 1 ) );
+        assertThat( server.requests.get( 0 ).size(), is( 2 ) );
+    }
+
+    @Test
+    public void cacheIsKeyedByEndpoint()
+    {
+        new CachingVersionTranslator( server, "http://a", temp.getRoot(), 60000 ).translateVersions(
+                        Arrays.asList( known ) );
+        new CachingVersionTranslator( server, "http://b", temp.getRoot(), 60000 ).translateVersions(
+                        Arrays.asList( known ) );
+
+        assertThat( server.requests.size(), is( 2 ) );
+    }
+
+    @Test
+    public void expiredEntriesAreTranslatedAgain()
+        throws Exception
+    {
+        VersionTranslator translator = new CachingVersionTranslator( server, "http://a", temp.getRoot(), 1 );
+
+        translator.translateVersions( Arrays.asList( known ) );
+        Thread.sleep( 10 );
+        Map<ProjectVersionRef, String> result = translator.translateVersions( Arrays.asList( known ) );
+
+        assertThat( result.get( known ), is( "1.0-redhat-1" ) );
+        assertThat( server.requests.size(), is( 2 ) );
+    }
+
+    @Test
+    public void concurrentTranslationsAreMerged()
+    {
+        // The second translation completes while the first is waiting for its server, after it read the cache.
+        final VersionTranslator other = new CachingVersionTranslator( server, "http://a", temp.getRoot(), 60000 );
+        final VersionTranslator slow = new VersionTranslator()
+        {
+            @Override
+            public Map<ProjectVersionRef, String> translateVersions( List<ProjectVersionRef> projects )
+            {
+                other.translateVersions( Arrays.asList( unknown ) );
+                return server.translateVersions( projects );
+            }
+        };
+        new CachingVersionTranslator( slow, "http://a", temp.getRoot(), 60000 ).translateVersions(
+                        Arrays.asList( known ) );
+        assertThat( server.requests.size(), is( 2 ) );
+
+        new CachingVersionTranslator( server, "http://a", temp.getRoot(), 60000 ).translateVersions(
+                        Arrays.asList( known, unknown ) );
+        assertThat( server.requests.size(), is( 2 ) );
+    }
+
+    private class RecordingTranslator
+        implements VersionTranslator
+    {
+        private final List<List<ProjectVersionRef>> requests = new ArrayList<List<ProjectVersionRef>>();
+
+        public Map<ProjectVersionRef, String> translateVersions( List<ProjectVersionRef> projects )
+        {
+            requests.add( projects );
+
+            Map<ProjectVersionRef, String> result = new HashMap<ProjectVersionRef, String>();
+            for ( ProjectVersionRef project : projects )
+            {
+                if ( !project.equals( unknown ) )
+                {
+                    result.put( project, project.getVersionString() + "-redhat-1" );
+                }
+            }
+            return result;
+        }
+    }
+}
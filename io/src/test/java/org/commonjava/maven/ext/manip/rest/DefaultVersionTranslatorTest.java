@@ -7,7 +7,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mashape.unirest.http.Unirest;
 import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
 import org.commonjava.maven.ext.manip.rest.exception.RestException;
+import org.commonjava.maven.ext.manip.rest.exception.ServerException;
+import org.commonjava.maven.ext.manip.rest.handler.AddSuffixJettyHandler;
+import org.commonjava.maven.ext.manip.rest.handler.FailingJettyHandler;
 import org.commonjava.maven.ext.manip.rest.rule.MockServer;
+import org.commonjava.maven.ext.manip.server.JettyHttpServer;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -20,6 +24,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -107,6 +112,17 @@ public class DefaultVersionTranslatorTest
         assertThat( actualResult, is( expectedResult ) );
     }
 
+    @Test
+    public void testTranslateVersionsChunked()
+    {
+        DefaultVersionTranslator chunked = new DefaultVersionTranslator( mockServer.getUrl(), 100, 4 );
+
+        Map<ProjectVersionRef, String> expectedResult = versionTranslator.translateVersions( aLotOfGavs );
+
+        assertThat( chunked.translateVersions( aLotOfGavs ), is( expectedResult ) );
+        assertThat( expectedResult.size(), is( aLotOfGavs.size() ) );
+    }
+
     @Test
     public void testTranslateVersionsFailNoResponse()
     {
@@ -134,6 +150,159 @@ public class DefaultVersionTranslatorTest
         }
     }
 
+    @Test
+    public void testTranslateVersionsGzipGrouped()
+    {
+        AddSuffixJettyHandler handler = new AddSuffixJettyHandler();
+        JettyHttpServer server = new JettyHttpServer( handler, 8090 );
+        try
+        {
+            DefaultVersionTranslator translator = new DefaultVersionTranslator( "http://127.0.0.1:8090", 100, 4 );
+            translator.setGzip( true );
+            translator.setGroupedFormat( true );
+
+            Map<ProjectVersionRef, String> expectedResult = versionTranslator.translateVersions( aLotOfGavs );
+
+            assertThat( translator.translateVersions( aLotOfGavs ), is( expectedResult ) );
+            assertThat( handler.getGzippedRequests(), is( handler.getGroupedRequests() ) );
+            assertThat( handler.getGzippedResponses(), is( handler.getGroupedRequests() ) );
+            assertThat( handler.getGroupedRequests() > 1, is( true ) );
+        }
+        finally
+        {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testTranslateVersionsWithoutGzip()
+    {
+        AddSuffixJettyHandler handler = new AddSuffixJettyHandler();
+        JettyHttpServer server = new JettyHttpServer( handler, 8090 );
+        try
+        {
+            DefaultVersionTranslator translator = new DefaultVersionTranslator( "http://127.0.0.1:8090", 100, 4 );
+
+            Map<ProjectVersionRef, String> expectedResult = versionTranslator.translateVersions( aLotOfGavs );
+
+            assertThat( translator.translateVersions( aLotOfGavs ), is( expectedResult ) );
+            assertThat( handler.getGzippedRequests(), is( 0 ) );
+            assertThat( handler.getGzippedResponses(), is( 0 ) );
+        }
+        finally
+        {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testTranslateVersionsRetriesServerErrors()
+    {
+        FailingJettyHandler handler = new FailingJettyHandler( 2, 503, 0 );
+        JettyHttpServer server = new JettyHttpServer( handler, 8090 );
+        try
+        {
+            DefaultVersionTranslator translator = new DefaultVersionTranslator( "http://127.0.0.1:8090" );
+            translator.setRetries( 3, 10 );
+
+            ProjectVersionRef gav = new ProjectVersionRef( "com.example", "example", "1.0" );
+            Map<ProjectVersionRef, String> result = translator.translateVersions( Collections.singletonList( gav ) );
+
+            assertThat( result.get( gav ), is( "1.0-redhat-1" ) );
+            assertThat( handler.getRequests(), is( 3 ) );
+            assertThat( translator.getRetryCount(), is( 2L ) );
+            assertThat( translator.getFailureCount(), is( 2L ) );
+            assertThat( translator.getRequestCount(), is( 3L ) );
+        }
+        finally
+        {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testTranslateVersionsCircuitBreaker()
+    {
+        FailingJettyHandler handler = new FailingJettyHandler( Integer.MAX_VALUE, 500, 0 );
+        JettyHttpServer server = new JettyHttpServer( handler, 8090 );
+        try
+        {
+            DefaultVersionTranslator translator = new DefaultVersionTranslator( "http://127.0.0.1:8090" );
+            translator.setRetries( 5, 10 );
+            translator.setCircuitBreaker( 3, 60000 );
+
+            List<ProjectVersionRef> gavs =
+                Collections.singletonList( new ProjectVersionRef( "com.example", "example", "1.0" ) );
+            try
+            {
+                translator.translateVersions( gavs );
+                fail( "Failed to throw ServerException when server failed." );
+            }
+            catch ( ServerException ex )
+            {
+                // Pass - the breaker opened before the retries were exhausted.
+            }
+            assertThat( handler.getRequests(), is( 3 ) );
+
+            try
+            {
+                translator.translateVersions( gavs );
+                fail( "Failed to throw RestException with an open circuit breaker." );
+            }
+            catch ( ServerException ex )
+            {
+                fail( "Server contacted with an open circuit breaker." );
+            }
+            catch ( RestException ex )
+            {
+                // Pass
+            }
+            assertThat( handler.getRequests(), is( 3 ) );
+        }
+        finally
+        {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testTranslateVersionsReadTimeout()
+    {
+        FailingJettyHandler handler = new FailingJettyHandler( 0, 200, 2000 );
+        JettyHttpServer server = new JettyHttpServer( handler, 8090 );
+        DefaultVersionTranslator translator = new DefaultVersionTranslator( "http://127.0.0.1:8090" );
+        try
+        {
+            translator.setTimeouts( DefaultVersionTranslator.DEFAULT_CONNECT_TIMEOUT, 200 );
+            translator.setRetries( 1, 10 );
+
+            long start = System.currentTimeMillis();
+            try
+            {
+                translator.translateVersions(
+                    Collections.singletonList( new ProjectVersionRef( "com.example", "example", "1.0" ) ) );
+                fail( "Failed to throw RestException when server was too slow." );
+            }
+            catch ( RestException ex )
+            {
+                // Pass
+            }
+
+            assertThat( System.currentTimeMillis() - start < 1500, is( true ) );
+            assertThat( translator.getRequestCount(), is( 2L ) );
+            assertThat( translator.getRetryCount(), is( 1L ) );
+
+            // The timeouts belong to the translator, so another one still waits for the slow server.
+            ProjectVersionRef gav = new ProjectVersionRef( "com.example", "example", "1.0" );
+            DefaultVersionTranslator patient = new DefaultVersionTranslator( "http://127.0.0.1:8090" );
+            assertThat( patient.translateVersions( Collections.singletonList( gav ) ).get( gav ), is( "1.0-redhat-1" ) );
+        }
+        finally
+        {
+            server.shutdown();
+        }
+    }
+
     @Test( timeout = 500 )
     public void testTranslateVersionsPerformance()
     {
@@ -0,0 +1,90 @@
+/**
+ *  Copyright (C) 2015 Red Hat, Inc (jcasey@redhat.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.rest;
+
+import org.apache.commons.io.FileUtils;
+import org.commonjava.maven.atlas.ident.ref.ProjectVersionRef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FileVersionTranslatorTest
+{
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void binaryRoundTrip()
+        throws Exception
+    {
+        Map<ProjectVersionRef, String> translations = new HashMap<ProjectVersionRef, String>();
+        List<ProjectVersionRef> query = new ArrayList<ProjectVersionRef>();
+        for ( int i = 0; i < 5000; i++ )
+        {
+            ProjectVersionRef gav = new ProjectVersionRef( "org.example.g" + ( i % 50 ), "artifact-" + i, "1." + i );
+            translations.put( gav, "1." + i + ".redhat-" + ( i % 7 ) );
+            query.add( gav );
+        }
+        ProjectVersionRef unknown = new ProjectVersionRef( "org.example", "unknown", "1.0" );
+        query.add( unknown );
+
+        File file = temp.newFile( "translations.bin" );
+        FileVersionTranslator.write( file, translations );
+
+        assertThat( new FileVersionTranslator( file ).translateVersions( query ), is( translations ) );
+    }
+
+    @Test
+    public void emptyBinaryFile()
+        throws Exception
+    {
+        File file = temp.newFile( "empty.bin" );
+        FileVersionTranslator.write( file, new HashMap<ProjectVersionRef, String>() );
+
+        Map<ProjectVersionRef, String> result = new FileVersionTranslator( file ).translateVersions(
+            Arrays.asList( new ProjectVersionRef( "org.example", "unknown", "1.0" ) ) );
+
+        assertThat( result.isEmpty(), is( true ) );
+    }
+
+    @Test
+    public void readsServiceJson()
+        throws Exception
+    {
+        File file = temp.newFile( "translations.json" );
+        FileUtils.writeStringToFile( file, "[{\"groupId\":\"com.example\",\"artifactId\":\"example\","
+            + "\"version\":\"1.0\",\"bestMatchVersion\":\"1.0-redhat-1\",\"availableVersions\":[\"1.0-redhat-1\"]}]",
+                                     "UTF-8" );
+
+        ProjectVersionRef known = new ProjectVersionRef( "com.example", "example", "1.0" );
+        Map<ProjectVersionRef, String> result = new FileVersionTranslator( file ).translateVersions(
+            Arrays.asList( known, new ProjectVersionRef( "com.example", "example", "2.0" ) ) );
+
+        Map<ProjectVersionRef, String> expected = new HashMap<ProjectVersionRef, String>();
+        expected.put( known, "1.0-redhat-1" );
+        assertThat( result, is( expected ) );
+    }
+}
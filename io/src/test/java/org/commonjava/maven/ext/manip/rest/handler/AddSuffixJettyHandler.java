@@ -28,9 +28,16 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * @author vdedik@redhat.com
@@ -56,6 +63,12 @@ public class AddSuffixJettyHandler
 
     private ObjectMapper objectMapper = new ObjectMapper();
 
+    private final AtomicInteger gzippedRequests = new AtomicInteger();
+
+    private final AtomicInteger groupedRequests = new AtomicInteger();
+
+    private final AtomicInteger gzippedResponses = new AtomicInteger();
+
     public AddSuffixJettyHandler()
     {
         this( DEFAULT_ENDPOINT, DEFAULT_METHOD, DEFAULT_SUFFIX );
@@ -84,7 +97,13 @@ public class AddSuffixJettyHandler
             try
             {
                 String line;
-                BufferedReader reader = request.getReader();
+                InputStream in = request.getInputStream();
+                if ( "gzip".equals( request.getHeader( "Content-Encoding" ) ) )
+                {
+                    gzippedRequests.incrementAndGet();
+                    in = new GZIPInputStream( in );
+                }
+                BufferedReader reader = new BufferedReader( new InputStreamReader( in, "UTF-8" ) );
                 while ( ( line = reader.readLine() ) != null )
                 {
                     jb.append( line );
@@ -97,30 +116,35 @@ public class AddSuffixJettyHandler
                 return;
             }
 
-            List<Map<String, Object>> requestBody = objectMapper.readValue( jb.toString(), List.class );
-
-            // Prepare Response
-            List<Map<String, Object>> responseBody = new ArrayList<Map<String, Object>>();
-            for ( Map<String, Object> gav : requestBody)
+            Object responseBody;
+            if ( jb.toString().trim().startsWith( "{" ) )
             {
-                String version = (String) gav.get( "version" );
-                List<String> availableVersions = new ArrayList<String>();
-                String bestMatchVersion = version + "-" + this.suffix;
-                availableVersions.add( bestMatchVersion );
-
-                gav.put( "bestMatchVersion", bestMatchVersion );
-                gav.put( "whitelisted", false );
-                gav.put( "blacklisted", false );
-                gav.put( "availableVersions", availableVersions );
-
-                responseBody.add( gav );
+                groupedRequests.incrementAndGet();
+                responseBody = handleGrouped( objectMapper.readValue( jb.toString(), Map.class ) );
+            }
+            else
+            {
+                responseBody = handle( objectMapper.readValue( jb.toString(), List.class ) );
             }
 
             // Set Response
             response.setContentType( "application/json;charset=utf-8" );
             response.setStatus( HttpServletResponse.SC_OK );
             baseRequest.setHandled( true );
-            response.getWriter().println( objectMapper.writeValueAsString( responseBody ) );
+
+            String accept = request.getHeader( "Accept-Encoding" );
+            if ( accept != null && accept.contains( "gzip" ) )
+            {
+                gzippedResponses.incrementAndGet();
+                response.setHeader( "Content-Encoding", "gzip" );
+                OutputStream out = new GZIPOutputStream( response.getOutputStream() );
+                out.write( objectMapper.writeValueAsBytes( responseBody ) );
+                out.close();
+            }
+            else
+            {
+                response.getWriter().println( objectMapper.writeValueAsString( responseBody ) );
+            }
         }
         else
         {
@@ -129,4 +153,62 @@ public class AddSuffixJettyHandler
                          request.getPathInfo(), this.method, this.endpoint );
         }
     }
+
+    private List<Map<String, Object>> handle( List<Map<String, Object>> requestBody )
+    {
+        // Prepare Response
+        List<Map<String, Object>> responseBody = new ArrayList<Map<String, Object>>();
+        for ( Map<String, Object> gav : requestBody)
+        {
+            String version = (String) gav.get( "version" );
+            List<String> availableVersions = new ArrayList<String>();
+            String bestMatchVersion = version + "-" + this.suffix;
+            availableVersions.add( bestMatchVersion );
+
+            gav.put( "bestMatchVersion", bestMatchVersion );
+            gav.put( "whitelisted", false );
+            gav.put( "blacklisted", false );
+            gav.put( "availableVersions", availableVersions );
+
+            responseBody.add( gav );
+        }
+        return responseBody;
+    }
+
+    private Map<String, Map<String, Map<String, String>>> handleGrouped(
+                    Map<String, Map<String, List<String>>> requestBody )
+    {
+        Map<String, Map<String, Map<String, String>>> responseBody =
+                        new LinkedHashMap<String, Map<String, Map<String, String>>>();
+        for ( Map.Entry<String, Map<String, List<String>>> group : requestBody.entrySet() )
+        {
+            Map<String, Map<String, String>> artifacts = new LinkedHashMap<String, Map<String, String>>();
+            for ( Map.Entry<String, List<String>> artifact : group.getValue().entrySet() )
+            {
+                Map<String, String> versions = new LinkedHashMap<String, String>();
+                for ( String version : artifact.getValue() )
+                {
+                    versions.put( version, version + "-" + this.suffix );
+                }
+                artifacts.put( artifact.getKey(), versions );
+            }
+            responseBody.put( group.getKey(), artifacts );
+        }
+        return responseBody;
+    }
+
+    public int getGzippedRequests()
+    {
+        return gzippedRequests.get();
+    }
+
+    public int getGroupedRequests()
+    {
+        return groupedRequests.get();
+    }
+
+    public int getGzippedResponses()
+    {
+        return gzippedResponses.get();
+    }
 }
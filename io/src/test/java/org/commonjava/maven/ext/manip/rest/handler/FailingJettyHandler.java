@@ -0,0 +1,86 @@
+/**
+ *  Copyright (C) 2015 Red Hat, Inc (jcasey@redhat.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.commonjava.maven.ext.manip.rest.handler;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers the first few requests with an error status, optionally after a delay, and hands the remainder to
+ * {@link AddSuffixJettyHandler}.
+ */
+public class FailingJettyHandler
+                extends AbstractHandler
+                implements Handler
+{
+    private final AddSuffixJettyHandler delegate = new AddSuffixJettyHandler();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final int failures;
+
+    private final int status;
+
+    private final long delay;
+
+    /**
+     * @param failures number of requests to fail.
+     * @param status HTTP status of the failed requests.
+     * @param delay milliseconds to wait before answering any request.
+     */
+    public FailingJettyHandler( int failures, int status, long delay )
+    {
+        this.failures = failures;
+        this.status = status;
+        this.delay = delay;
+    }
+
+    @Override public void handle( String target, Request baseRequest, HttpServletRequest request,
+                                  HttpServletResponse response )
+                    throws IOException, ServletException
+    {
+        try
+        {
+            Thread.sleep( delay );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if ( requests.incrementAndGet() <= failures )
+        {
+            response.setStatus( status );
+            baseRequest.setHandled( true );
+        }
+        else
+        {
+            delegate.handle( target, baseRequest, request, response );
+        }
+    }
+
+    public int getRequests()
+    {
+        return requests.get();
+    }
+}